@@ -5,7 +5,6 @@ import hlt.*;
 
 import java.util.ArrayList;
 import java.util.Random;
-import java.util.HashMap;
 
 public class MyBot {
     public static void main(final String[] args) {
@@ -18,19 +17,23 @@ public class MyBot {
         final Random rng = new Random(rngSeed);
 
         Game game = new Game();
-		final HashMap<EntityId,String> shipStatus = new HashMap<>();
-		final String STATUS_EXPLORE = "explore";
-		final String STATUS_RETURN  = "return";
+		final ShipStates states = new ShipStates(game.gameMap.reservations);
+		game.ships.addListener(states);
         final int MAX_TURN = (int)Math.floor(Math.min(game.gameMap.width, game.gameMap.height) * 25 / 8) + 300;
 
         int maxShip = 0;
+		final MoveGraph graph = new MoveGraph(game.gameMap);
+		final PartitionedSolver solver = new PartitionedSolver(game.gameMap);
+		final TargetAuction auction = new TargetAuction(game.gameMap, game.values);
+		final ArrayList<Ship> explorers = new ArrayList<>();
 		
         // At this point "game" variable is populated with initial map data.
         // This is a good place to do computationally expensive start-up pre-processing.
         // As soon as you call "ready" function below, the 2 second per turn timer will start.
+		warmUp(game, graph, solver, explorers, rng);
         game.ready("rpahlevy");
 
-        log("Successfully created bot! My Player ID is " + game.myId + ". Bot rng seed is " + rngSeed + ".");
+        Log.info("Successfully created bot! My Player ID is {}. Bot rng seed is {}.").arg(game.myId.id).arg(rngSeed);
         boolean kamikaze = false;
 
         for (;;) {
@@ -39,225 +42,253 @@ public class MyBot {
             final GameMap gameMap = game.gameMap;
             kamikaze = game.turnNumber > MAX_TURN - 50;
 
-			final HashMap<Ship,Direction> queuedShip = new HashMap<>();
             final ArrayList<Command> commandQueue = new ArrayList<>();
 
-            for (final Ship ship : me.ships.values()) {
-                ship.planned = false;				
-				String status = shipStatus.get(ship.id);
-				if (status == null) {
-					shipStatus.put(ship.id, STATUS_EXPLORE);
+			final boolean planned = planTurn(game, states, graph, solver, auction, explorers, kamikaze, commandQueue);
+			Log.info("[TIME] Turn {} planned in {} ms").arg(game.turnNumber).arg(game.budget.elapsedMillis());
+
+            if (game.turnNumber == 200) {
+                maxShip = me.ships.values().size();
+            }
+
+            if(
+                planned && game.turnNumber <= MAX_TURN - 200 &&
+                // (game.turnNumber <= 200 || (game.turnNumber > 200 && me.ships.values().size() < maxShip)) &&
+                me.halite >= Constants.SHIP_COST )
+			{
+				final Ship ocp = gameMap.at(me.shipyard).ship();
+				if (ocp == null || !ocp.owner.equals(me.id))
+				{
+					commandQueue.add(me.shipyard.spawn());
 				}
-				
-				
+            }
+
+            game.endTurn(commandQueue);
+        }
+    }
+
+	// plays synthetic turns on the real map so the planner is compiled by the JIT before the first real turn
+	private static void warmUp(final Game game, final MoveGraph graph, final PartitionedSolver solver,
+			final ArrayList<Ship> explorers, final Random rng)
+	{
+		final int WARM_UP_TURNS = 150;
+		final long WARM_UP_LIMIT_NANOS = TurnBudget.WARM_UP_MILLIS * 1_000_000L;
+
+		final long start = System.nanoTime();
+		final Log.Level level = Log.level();
+		Log.setLevel(Log.Level.WARN);
+
+		// throwaway state, so nothing from the synthetic turns leaks into the game
+		final ShipStates states = new ShipStates(game.gameMap.reservations);
+		final TargetAuction auction = new TargetAuction(game.gameMap, game.values);
+		final ArrayList<Command> commandQueue = new ArrayList<>();
+
+		int turns = 0;
+		while (turns < WARM_UP_TURNS && System.nanoTime() - start < WARM_UP_LIMIT_NANOS) {
+			game.warmUpFrame(rng, 4 + turns % 28);
+			commandQueue.clear();
+			planTurn(game, states, graph, solver, auction, explorers, turns % 10 == 9, commandQueue);
+			++turns;
+		}
+		game.endWarmUp();
+
+		Log.setLevel(level);
+		Log.info("[WARMUP] {} synthetic turns in {} ms").arg(turns).arg((System.nanoTime() - start) / 1_000_000L);
+	}
+
+	// one turn of planning into the command queue; on failure the queue is left empty, so every ship stays still
+	private static boolean planTurn(final Game game, final ShipStates states, final MoveGraph graph,
+			final PartitionedSolver solver, final TargetAuction auction, final ArrayList<Ship> explorers,
+			final boolean kamikaze, final ArrayList<Command> commandQueue)
+	{
+		final Player me = game.me;
+		final GameMap gameMap = game.gameMap;
+		try {
+			graph.reset();
+			solver.reset();
+			auction.reset();
+			explorers.clear();
+
+			for (final Ship ship : me.ships.values()) {
+				final int id = ship.id.id;
+				states.setTarget(id, -1);
+
+				// out of time: the remaining ships take their O(1) move instead of searching
+				final boolean hurry = game.budget.isExpired();
+
 				Direction d = Direction.STILL;
-				if (status == STATUS_RETURN)
+				if (states.role(id) == ShipStates.RETURN)
 				{
-					if (ship.position.equals(me.shipyard.position)) {
-                        if (!kamikaze) {
-                            shipStatus.put(ship.id, STATUS_EXPLORE);
-                            d = gameMap.getNextHaliteDirection(ship);
-                        } else {
-                            d = Direction.STILL;
-                        }
+					if (me.distances.steps(gameMap.index(ship.position)) == 0) {
+						if (!kamikaze && !hurry) {
+							states.setRole(id, ShipStates.EXPLORE);
+							explorers.add(ship);
+							continue;
+						} else if (!kamikaze) {
+							states.setRole(id, ShipStates.EXPLORE);
+						}
+					} else if (hurry) {
+						d = gameMap.getNextDirection(ship, me.distances);
 					} else {
-						d = gameMap.getNextDirection(ship, me.shipyard.position);
+						d = returnHome(gameMap, me, ship);
 					}
 				}
 				else
 				{
 					if (ship.halite >= Constants.MAX_HALITE * 0.75 || kamikaze) {
-						shipStatus.put(ship.id, STATUS_RETURN);
-						d = gameMap.getNextDirection(ship, me.shipyard.position);
-					} else if (gameMap.at(ship).halite < Constants.MAX_HALITE / 20) {
-						d = gameMap.getNextHaliteDirection(ship);
+						states.setRole(id, ShipStates.RETURN);
+						d = hurry ? gameMap.getNextDirection(ship, me.distances) : returnHome(gameMap, me, ship);
+					} else if (gameMap.at(ship).halite() < Constants.MAX_HALITE / 20 && !hurry) {
+						explorers.add(ship);
+						continue;
+					} else if (gameMap.at(ship.position).book(ship)) {
+						// mining in place, so the route it had reserved is not followed any more
+						gameMap.reservations.release(id);
+						states.setTarget(id, gameMap.index(ship.position));
 					} else {
-						gameMap.at(ship.position).book(ship);
+						// someone else already holds this cell, look for another
+						explorers.add(ship);
+						continue;
 					}
 				}
-				
-				// commandQueue.add(ship.move(d));
-				Position targetPosition = gameMap.normalize(ship.position.directionalOffset(d));
-				MapCell targetNode = gameMap.at(targetPosition);
-				
-				// check targetNode safe or not
-				boolean planned = true;
-				Ship partnerShip = null;
-				Direction partnerDirection = null;
-				Position partnerTargetPosition = null;
-				do {
-					// if not moving
-					if (d == Direction.STILL) {
-						break;
-					}
-					
-					// if target node not occupied
-					if (!targetNode.isOccupied() || (targetNode.hasStructure() && kamikaze)) {
-						break;
-					}
-					
-					// check if node occupied by other player
-					Ship ocp = targetNode.ship;
-					if (!ocp.owner.equals(ship.owner)) {
-						d = Direction.STILL;
-						break;
-					}
-					
-					// check if ocp has been queued
-					Direction ocpQueue = queuedShip.get(ocp);
-					if (ocpQueue == null) {
-						planned = false;
-						break;
-					}
-					
-					// check ocp target position is ship's position
-					Position ocpTargetPosition = gameMap.normalize(ocp.position.directionalOffset(ocpQueue));
-					if (ocpTargetPosition.equals(ship.position)) {
-						// best match!
-						queuedShip.remove(ocp);
-						partnerShip = ocp;
-						partnerDirection = ocpQueue;
-						partnerTargetPosition = ocpTargetPosition;
-					} else {
-						// wait for ocp, ok?
-						planned = false;
-					}
-				} while (false);
-				
-				// if planned add to command
-				if (planned) {
-                    ship.planned = true;
-					commandQueue.add(ship.move(d));
-					
-					if (d == Direction.STILL) {
-						gameMap.at(ship.position).markUnsafe(ship);
-						log("[PLAN] Ship "+ ship.id +" ["+ d +"] at "+ ship.position.x +","+ ship.position.y);
-					} else {
-						gameMap.at(ship.position).ship = null;
-						targetNode.markUnsafe(ship);
-						log("[PLAN] Ship "+ ship.id +" ["+ d +"] to "+ targetPosition.x +","+ targetPosition.y);
-					}
-					
-				} else {
-                    queuedShip.put(ship, d);
-					log("[QUED] Ship "+ ship.id +" ["+ d +"] to "+ targetPosition.x +","+ targetPosition.y);
-				}
-				
-				// also help partner to move if any
-				if (partnerShip != null && partnerDirection != null) {
-                    partnerShip.planned = true;
-					commandQueue.add(partnerShip.move(partnerDirection));
-					gameMap.at(partnerTargetPosition).markUnsafe(partnerShip);
-                    log("[PLAN-P] Ship "+ partnerShip.id +" ["+ d +"] to "+ partnerTargetPosition.x +","+ partnerTargetPosition.y);
-				}
-				
-            }
-			
-            // log("##")
-			
-			for (final Ship ship: queuedShip.keySet()) {
-                // log("\t[CP] Ship "+ ship.id +" ["+ d +"]");
-				if (ship.planned) continue;
-				
-				Direction d = queuedShip.get(ship);
-				Position targetPosition = gameMap.normalize(ship.position.directionalOffset(d));
-				MapCell targetNode = gameMap.at(targetPosition);
-				
-				boolean planned = true;
-				Ship partnerShip = null;
-				Direction partnerDirection = null;
-				Position partnerTargetPosition = null;
-				do {
-					// if target node not occupied
-					if (!targetNode.isOccupied()) {
-						break;
-					}
-					
-					// check if node occupied by other player
-					Ship ocp = targetNode.ship;
-					if (!ocp.owner.equals(ship.owner)) {
-						d = Direction.STILL;
-						break;
-					}
-					
-					// check if ocp has been queued
-					Direction ocpQueue = queuedShip.get(ocp);
-					if (ocpQueue == null) {
-						planned = false;
-						break;
-					}
-					
-					// check ocp target position is ship's position
-					Position ocpTargetPosition = gameMap.normalize(ocp.position.directionalOffset(ocpQueue));
-					if (ocpTargetPosition.equals(ship.position)) {
-						// best match!
-						// queuedShip.remove(ocp);
-						partnerShip = ocp;
-						partnerDirection = ocpQueue;
-						partnerTargetPosition = ocpTargetPosition;
-					} else {
-						// wait for ocp, ok?
-						planned = false;
-					}
-				} while (false);
-				
-				// if planned add to command
-                ship.planned = true;
-				if (planned) {
-					commandQueue.add(ship.move(d));
-					
-					if (d == Direction.STILL) {
-						gameMap.at(ship.position).markUnsafe(ship);
-                        log("[PLAN] Ship "+ ship.id +" ["+ d +"] at "+ ship.position.x +","+ ship.position.y);
-					} else {
-                        if (partnerShip == null || (partnerShip != null && !partnerShip.planned)) {
-						    gameMap.at(ship.position).ship = null;
-                        }
 
-						targetNode.markUnsafe(ship);
-                        log("[PLAN] Ship "+ ship.id +" ["+ d +"] to "+ targetPosition.x +","+ targetPosition.y);
-					}
+				states.setQueued(id, d);
+				graph.add(ship, d, isLegal(gameMap, me, ship, d, kamikaze));
+				Log.debug("[WANT] Ship {} [{}] at {},{}").arg(id).arg(d).arg(ship.position.x).arg(ship.position.y);
+			}
+
+			// explorers bid once every mining ship has booked its cell, so nobody bids on a taken target
+			auction.addBidders(explorers);
+			if (!game.budget.isExpired()) {
+				auction.run();
+			}
+			// the auction has claimed every won target before any loser searches, so the fallback cannot take them
+			for (int slot = 0; slot < auction.bidderCount(); ++slot) {
+				states.setTarget(auction.ship(slot).id.id, auction.target(slot));
+			}
+			for (int slot = 0; slot < auction.bidderCount(); ++slot) {
+				final Ship ship = auction.ship(slot);
+				final Direction d = game.budget.isExpired()
+						? Direction.STILL
+						: explore(gameMap, ship, states.target(ship.id.id));
+				states.setQueued(ship.id.id, d);
+				graph.add(ship, d, isLegal(gameMap, me, ship, d, kamikaze));
+				Log.debug("[WANT] Ship {} [{}] at {},{}").arg(ship.id.id).arg(d).arg(ship.position.x).arg(ship.position.y);
+			}
+
+			// chains, swaps and rotations commit straight away, the contested rest goes through the solver
+			graph.resolve();
+			for (int slot = 0; slot < graph.shipCount(); ++slot) {
+				final Ship ship = graph.ship(slot);
+				if (graph.isCommitted(slot)) {
+					solver.addFixedShip(ship, graph.direction(slot));
 				} else {
-					commandQueue.add(ship.stayStill());
-					gameMap.at(ship.position).markUnsafe(ship);
-                    log("[PLAN-Q] Ship "+ ship.id +" ["+ d +"] at "+ ship.position.x +","+ ship.position.y);
-				}
-				
-				
-				// also help partner to move if any
-				if (partnerShip != null && partnerDirection != null) {
-                    if (!partnerShip.planned) {
-                        partnerShip.planned = true;
-                        commandQueue.add(partnerShip.move(partnerDirection));
-                        gameMap.at(partnerTargetPosition).markUnsafe(partnerShip);
-                        log("[PLAN-P] Ship "+ partnerShip.id +" ["+ d +"] to "+ partnerTargetPosition.x +","+ partnerTargetPosition.y);
-                    }
+					// full and returning ships get first pick of the cells
+					final int priority = states.role(ship.id.id) == ShipStates.RETURN ? 3 : 1;
+					addMoves(solver, gameMap, me, ship, states.queued(ship.id.id), priority, kamikaze);
 				}
 			}
-			
+			solver.solve();
 
-            if (game.turnNumber == 200) {
-                maxShip = me.ships.values().size();
-            }
+			for (int slot = 0; slot < solver.shipCount(); ++slot) {
+				gameMap.at(solver.ship(slot)).clearShip();
+			}
+			for (int slot = 0; slot < solver.shipCount(); ++slot) {
+				final Ship ship = solver.ship(slot);
+				final Direction d = solver.direction(slot);
+				final Position targetPosition = gameMap.position(solver.target(slot));
 
-            if(
-                game.turnNumber <= MAX_TURN - 200 &&
-                // (game.turnNumber <= 200 || (game.turnNumber > 200 && me.ships.values().size() < maxShip)) &&
-                me.halite >= Constants.SHIP_COST )
-			{
-				final Ship ocp = gameMap.at(me.shipyard).ship;
-				if (ocp == null || !ocp.owner.equals(me.id))
-				{
-					commandQueue.add(me.shipyard.spawn());
-				}
-            }
+				commandQueue.add(ship.move(d));
+				gameMap.markUnsafe(solver.target(slot), ship);
+				Log.debug("[PLAN] Ship {} [{}] to {},{}").arg(ship.id.id).arg(d).arg(targetPosition.x).arg(targetPosition.y);
+			}
+			return true;
+		} catch (final RuntimeException e) {
+			Log.error("Planning failed on turn {}, every ship stays still: {}").arg(game.turnNumber).arg(e);
+			commandQueue.clear();
+			return false;
+		}
+	}
 
-            game.endTurn(commandQueue);
-        }
-    }
-	
-	public static void log(String msg)
+	// whether the ship can pay for the move and its target is not held by an enemy
+	private static boolean isLegal(final GameMap gameMap, final Player me, final Ship ship, final Direction d,
+			final boolean kamikaze)
+	{
+		if (d == Direction.STILL) {
+			return true;
+		}
+
+		final int origin = gameMap.index(ship.position);
+		if (ship.halite < gameMap.halite[origin] / Constants.MOVE_COST_RATIO) {
+			return false;
+		}
+
+		final int cell = gameMap.neighbour(origin, d);
+		final Ship other = gameMap.shipAt(cell);
+		return other == null || other.owner.equals(me.id) || (kamikaze && me.distances.steps(cell) == 0);
+	}
+
+	// candidate moves for the solver, cheapest first: the wanted move, staying, stepping aside, going back
+	private static void addMoves(final PartitionedSolver solver, final GameMap gameMap, final Player me,
+			final Ship ship, final Direction wanted, final int priority, final boolean kamikaze)
+	{
+		final int origin = gameMap.index(ship.position);
+		solver.addShip(ship, wanted == Direction.STILL ? 0 : 2 * priority);
+
+		// cannot pay for leaving the cell
+		if (ship.halite < gameMap.halite[origin] / Constants.MOVE_COST_RATIO) {
+			return;
+		}
+
+		for (final Direction d : Direction.ALL_CARDINALS) {
+			final int cell = gameMap.neighbour(origin, d);
+			final boolean home = me.distances.steps(cell) == 0;
+
+			// never move onto an enemy, except crashing into our own structure at the end
+			final Ship other = gameMap.shipAt(cell);
+			if (other != null && !other.owner.equals(me.id) && !(kamikaze && home)) {
+				continue;
+			}
+			if (kamikaze && home) {
+				solver.setUnlimited(cell);
+			}
+
+			int cost;
+			if (d == wanted) {
+				cost = 0;
+			} else if (wanted == Direction.STILL) {
+				cost = 4 * priority;
+			} else if (d == wanted.invertDirection()) {
+				cost = 4 * priority;
+			} else {
+				cost = 3 * priority;
+			}
+
+			// rather not step aside into the lane another ship has reserved for its next moves
+			if (d != wanted && (gameMap.reservations.isReserved(cell, 1, ship.id.id)
+					|| gameMap.reservations.isReserved(cell, 2, ship.id.id))) {
+				cost += priority;
+			}
+			solver.addMove(d, cost);
+		}
+	}
+
+	// head for the target booked from the auction, or search around if the ship won nothing
+	private static Direction explore(final GameMap gameMap, final Ship ship, final int target)
+	{
+		if (target < 0) {
+			return gameMap.getNextHaliteDirection(ship);
+		}
+		return gameMap.navigate(ship, target, DistanceField.DEFAULT_TURN_COST);
+	}
+
+	// follow the cached route to the cheapest structure, or the distance field if there is none
+	private static Direction returnHome(final GameMap gameMap, final Player me, final Ship ship)
 	{
-		Log.log(msg);
+		final int home = me.distances.nearest(gameMap.index(ship.position));
+		if (home < 0) {
+			return gameMap.getNextDirection(ship, me.distances);
+		}
+		return gameMap.navigate(ship, home, DistanceField.DEFAULT_TURN_COST);
 	}
 }
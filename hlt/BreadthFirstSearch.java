@@ -0,0 +1,104 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * Reusable breadth-first flood fill over the torus. The frontier is an int ring buffer and the visited set is
+ * a generation-stamped array, so starting a new search is O(1) and nothing is allocated per search.
+ *
+ * Usage: start(origin, radius), then call next() until it returns -1. Cells come out in order of increasing
+ * step count from the origin, starting with the origin itself. Several origins can be seeded with reset() and
+ * add() to flood from all of them at once.
+ */
+public class BreadthFirstSearch {
+    private final GameMap map;
+    private final int[] queue;
+    private final int mask;
+    private final int[] visited;
+    private final int[] depth;
+    private final byte[] firstMove;
+
+    private int generation;
+    private int head;
+    private int tail;
+    private int radius;
+
+    public BreadthFirstSearch(final GameMap map) {
+        this.map = map;
+
+        int capacity = 1;
+        while (capacity < map.size) {
+            capacity <<= 1;
+        }
+        queue = new int[capacity];
+        mask = capacity - 1;
+
+        visited = new int[map.size];
+        depth = new int[map.size];
+        firstMove = new byte[map.size];
+    }
+
+    /** Starts a search from origin that stops expanding at the given number of steps. */
+    public void start(final int origin, final int radius) {
+        reset(radius);
+        add(origin);
+    }
+
+    /** Starts an empty search; seed it with add() for a multi-source flood fill. */
+    public void reset(final int radius) {
+        if (++generation == 0) {
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+
+        this.radius = radius;
+        head = 0;
+        tail = 0;
+    }
+
+    /** Adds a source cell at depth 0. */
+    public void add(final int origin) {
+        if (visited[origin] == generation) return;
+
+        visited[origin] = generation;
+        depth[origin] = 0;
+        firstMove[origin] = (byte) Direction.STILL.ordinal();
+        queue[tail++ & mask] = origin;
+    }
+
+    /** Returns the next cell in breadth-first order and enqueues its unvisited neighbours, or -1 when done. */
+    public int next() {
+        if (head == tail) {
+            return -1;
+        }
+
+        final int cell = queue[head++ & mask];
+        final int steps = depth[cell];
+        if (steps < radius) {
+            for (int d = 0; d < 4; ++d) {
+                final int neighbour = map.neighbour(cell, Direction.ALL[d]);
+                if (visited[neighbour] == generation) continue;
+
+                visited[neighbour] = generation;
+                depth[neighbour] = steps + 1;
+                firstMove[neighbour] = steps == 0 ? (byte) d : firstMove[cell];
+                queue[tail++ & mask] = neighbour;
+            }
+        }
+        return cell;
+    }
+
+    public boolean isVisited(final int cell) {
+        return visited[cell] == generation;
+    }
+
+    /** Number of steps from the nearest origin to a visited cell. */
+    public int depth(final int cell) {
+        return depth[cell];
+    }
+
+    /** First move from the origin along the path the search took to a visited cell. */
+    public Direction firstMove(final int cell) {
+        return Direction.ALL[firstMove[cell]];
+    }
+}
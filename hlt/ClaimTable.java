@@ -0,0 +1,69 @@
+package hlt;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Target cells claimed by our ships this turn, one atomic int per cell, so ships can claim targets from
+ * several threads without locks. A claim carries a priority: a ship takes a cell by compare-and-set when the
+ * cell is free or held at a lower priority, which preempts the weaker ship. The ship id breaks ties, so any two
+ * claims are strictly ordered and the final holder of every cell does not depend on the order of the claims.
+ *
+ * Each entry packs the priority above the ship id plus one, so ship ids must stay below 65535; 0 is a free cell.
+ */
+public class ClaimTable {
+    private static final int SHIP_BITS = 16;
+    private static final int SHIP_MASK = (1 << SHIP_BITS) - 1;
+    /**
+     * Highest priority, for claims that must never be taken away, such as a ship mining its own cell.
+     * FIXED claims are first come: a later FIXED claim on a cell already held at FIXED fails.
+     */
+    public static final int FIXED = (1 << (31 - SHIP_BITS)) - 1;
+
+    private final AtomicIntegerArray claims;
+
+    public ClaimTable(final int size) {
+        claims = new AtomicIntegerArray(size);
+    }
+
+    /** Frees every cell; only while no thread is claiming. */
+    public void clear() {
+        for (int cell = 0; cell < claims.length(); ++cell) {
+            claims.lazySet(cell, 0);
+        }
+    }
+
+    /**
+     * Claims the cell for the ship at the given priority, between 0 and FIXED. Returns whether the ship holds
+     * the cell afterwards; it does not if a stronger claim is already there.
+     */
+    public boolean claim(final int cell, final int shipId, final int priority) {
+        final int mine = (priority << SHIP_BITS) | ((shipId + 1) & SHIP_MASK);
+        for (;;) {
+            final int current = claims.get(cell);
+            if (current == mine) {
+                return true;
+            }
+            if (current >>> SHIP_BITS == FIXED || Integer.compareUnsigned(current, mine) > 0) {
+                return false;
+            }
+            if (claims.compareAndSet(cell, current, mine)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean isClaimed(final int cell) {
+        return claims.get(cell) != 0;
+    }
+
+    /** Id of the ship holding the cell, or -1 if it is free. */
+    public int holder(final int cell) {
+        final int current = claims.get(cell);
+        return current == 0 ? -1 : (current & SHIP_MASK) - 1;
+    }
+
+    public boolean holds(final int cell, final int shipId) {
+        final int current = claims.get(cell);
+        return current != 0 && (current & SHIP_MASK) - 1 == shipId;
+    }
+}
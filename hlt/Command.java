@@ -1,22 +1,46 @@
 package hlt;
 
 public class Command {
-    public final String command;
+    private static final Command SPAWN = new Command('g', EntityId.NONE.id, null);
+
+    public final char type;
+    public final int id;
+    public final Direction direction;
 
     public static Command spawnShip() {
-        return new Command("g");
+        return SPAWN;
     }
 
     public static Command transformShipIntoDropoffSite(final EntityId id) {
-        return new Command("c " + id);
+        return new Command('c', id.id, null);
     }
 
     public static Command move(final EntityId id, final Direction direction) {
-        return new Command("m " + id + ' ' + direction.charValue);
+        return new Command('m', id.id, direction);
+    }
+
+    private Command(final char type, final int id, final Direction direction) {
+        this.type = type;
+        this.id = id;
+        this.direction = direction;
     }
 
-    private Command(final String command) {
-        this.command = command;
+    void encode(final CommandEncoder encoder) {
+        switch (type) {
+            case 'g': encoder.spawn(); break;
+            case 'c': encoder.construct(id); break;
+            case 'm': encoder.move(id, direction); break;
+            default: throw new IllegalStateException("Unknown command " + type);
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case 'g': return "g";
+            case 'c': return "c " + id;
+            default: return "m " + id + ' ' + direction.charValue;
+        }
     }
 
     @Override
@@ -24,13 +48,18 @@ public class Command {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        Command command1 = (Command) o;
+        Command command = (Command) o;
 
-        return command.equals(command1.command);
+        if (type != command.type) return false;
+        if (id != command.id) return false;
+        return direction == command.direction;
     }
 
     @Override
     public int hashCode() {
-        return command.hashCode();
+        int result = type;
+        result = 31 * result + id;
+        result = 31 * result + (direction != null ? direction.hashCode() : 0);
+        return result;
     }
 }
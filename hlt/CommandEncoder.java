@@ -0,0 +1,65 @@
+package hlt;
+
+import java.util.Arrays;
+
+public class CommandEncoder {
+    private byte[] buffer = new byte[1 << 12];
+    private int length;
+
+    public void spawn() {
+        ensureCapacity(2);
+        buffer[length++] = 'g';
+        buffer[length++] = ' ';
+    }
+
+    public void construct(final int shipId) {
+        ensureCapacity(14);
+        buffer[length++] = 'c';
+        buffer[length++] = ' ';
+        writeInt(shipId);
+        buffer[length++] = ' ';
+    }
+
+    public void move(final int shipId, final Direction direction) {
+        ensureCapacity(16);
+        buffer[length++] = 'm';
+        buffer[length++] = ' ';
+        writeInt(shipId);
+        buffer[length++] = ' ';
+        buffer[length++] = (byte) direction.charValue;
+        buffer[length++] = ' ';
+    }
+
+    /** Terminates the turn and hands the whole line to stdout in a single write. */
+    public void flush() {
+        ensureCapacity(1);
+        buffer[length++] = '\n';
+
+        System.out.write(buffer, 0, length);
+        System.out.flush();
+        length = 0;
+    }
+
+    private void writeInt(int value) {
+        if (value == 0) {
+            buffer[length++] = '0';
+            return;
+        }
+
+        int digits = 0;
+        for (int v = value; v > 0; v /= 10) {
+            ++digits;
+        }
+
+        length += digits;
+        for (int i = length - 1; value > 0; --i, value /= 10) {
+            buffer[i] = (byte) ('0' + value % 10);
+        }
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+    }
+}
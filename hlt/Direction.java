@@ -3,13 +3,18 @@ package hlt;
 import java.util.ArrayList;
 
 public enum Direction {
-    NORTH('n'),
-    EAST('e'),
-    SOUTH('s'),
-    WEST('w'),
-    STILL('o');
+    NORTH('n', 0, -1),
+    EAST('e', 1, 0),
+    SOUTH('s', 0, 1),
+    WEST('w', -1, 0),
+    STILL('o', 0, 0);
 
     public final char charValue;
+    public final int dx;
+    public final int dy;
+
+    /** Every direction indexed by ordinal, including STILL. */
+    public final static Direction[] ALL = values();
 
     public final static ArrayList<Direction> ALL_CARDINALS = new ArrayList<>();
     static {
@@ -31,7 +36,9 @@ public enum Direction {
         }
     }
 
-    Direction(final char charValue) {
+    Direction(final char charValue, final int dx, final int dy) {
         this.charValue = charValue;
+        this.dx = dx;
+        this.dy = dy;
     }
 }
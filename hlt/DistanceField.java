@@ -0,0 +1,153 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * Distances from every cell to the nearest structure of one player, recomputed once per turn from all of
+ * that player's structures at once. Holds both the plain step count and a move-cost weighted distance, where
+ * every move costs turnCost plus the halite burned leaving the cell, along with the first move of the cheapest
+ * route so a ship can look up its next step in O(1).
+ */
+public class DistanceField {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+    /** Halite a returning ship is willing to burn to save one turn. */
+    public static final int DEFAULT_TURN_COST = 10;
+
+    public final PlayerId owner;
+    private final GameMap map;
+    private final int turnCost;
+
+    private final int[] steps;
+    private final int[] cost;
+    private final int[] nearest;
+    private final byte[] next;
+
+    private final BreadthFirstSearch search;
+    private final IntHeap heap;
+
+    public DistanceField(final GameMap map, final PlayerId owner, final int turnCost) {
+        this.map = map;
+        this.owner = owner;
+        this.turnCost = turnCost;
+
+        steps = new int[map.size];
+        cost = new int[map.size];
+        nearest = new int[map.size];
+        next = new byte[map.size];
+
+        search = new BreadthFirstSearch(map);
+        heap = new IntHeap(map.size);
+    }
+
+    /** An empty field for the same player and turn cost, with its own buffers. */
+    DistanceField(final DistanceField like) {
+        this(like.map, like.owner, like.turnCost);
+    }
+
+    /** Rebuilds the field from the structures currently marked on the map. */
+    public void compute() {
+        compute(map.halite, map.structure, map.structureOwner);
+    }
+
+    /** Rebuilds the field on a snapshot instead of the live map, so it can run off the bot thread. */
+    void compute(final int[] halite, final long[] structure, final int[] structureOwner) {
+        Arrays.fill(steps, UNREACHABLE);
+        Arrays.fill(cost, UNREACHABLE);
+        Arrays.fill(nearest, -1);
+        Arrays.fill(next, (byte) Direction.STILL.ordinal());
+
+        search.reset(Integer.MAX_VALUE);
+        heap.clear();
+        for (int i = 0; i < structure.length; ++i) {
+            for (long word = structure[i]; word != 0; word &= word - 1) {
+                final int cell = (i << 6) + Long.numberOfTrailingZeros(word);
+                if (structureOwner[cell] != owner.id) continue;
+
+                search.add(cell);
+                cost[cell] = 0;
+                nearest[cell] = cell;
+                heap.push(cell, 0);
+            }
+        }
+
+        for (int cell; (cell = search.next()) >= 0;) {
+            steps[cell] = search.depth(cell);
+        }
+
+        relax(halite);
+    }
+
+    /** Takes over every cell of a field computed elsewhere, such as the Speculator's. */
+    void adopt(final DistanceField other) {
+        System.arraycopy(other.steps, 0, steps, 0, map.size);
+        System.arraycopy(other.cost, 0, cost, 0, map.size);
+        System.arraycopy(other.nearest, 0, nearest, 0, map.size);
+        System.arraycopy(other.next, 0, next, 0, map.size);
+    }
+
+    /**
+     * Repairs the field after the halite of the given cells dropped on the live map. Routes can only get
+     * cheaper, so each cell takes its best neighbour again and any improvement spreads by the same relaxation
+     * as a full rebuild, touching only the cells whose cost falls.
+     */
+    void lowered(final int[] cells, final int count) {
+        heap.clear();
+        for (int i = 0; i < count; ++i) {
+            final int cell = cells[i];
+            if (cost[cell] == 0 || cost[cell] == UNREACHABLE) continue;
+
+            final int leave = turnCost + map.halite[cell] / Constants.MOVE_COST_RATIO;
+            for (int d = 0; d < 4; ++d) {
+                final int to = map.neighbour(cell, Direction.ALL[d]);
+                if (cost[to] == UNREACHABLE) continue;
+
+                final int candidate = cost[to] + leave;
+                if (candidate < cost[cell]) {
+                    cost[cell] = candidate;
+                    nearest[cell] = nearest[to];
+                    next[cell] = (byte) d;
+                    heap.push(cell, candidate);
+                }
+            }
+        }
+        relax(map.halite);
+    }
+
+    // Dijkstra from the queued cells outward, every move paying turnCost plus the halite burned leaving its cell
+    private void relax(final int[] halite) {
+        while (!heap.isEmpty()) {
+            final int cell = heap.pop();
+            for (int d = 0; d < 4; ++d) {
+                final Direction direction = Direction.ALL[d];
+                final int from = map.neighbour(cell, direction);
+                final int candidate = cost[cell] + turnCost + halite[from] / Constants.MOVE_COST_RATIO;
+                if (candidate < cost[from]) {
+                    cost[from] = candidate;
+                    nearest[from] = nearest[cell];
+                    next[from] = (byte) direction.invertDirection().ordinal();
+                    heap.push(from, candidate);
+                }
+            }
+        }
+    }
+
+    /** Number of moves from the cell to the closest structure. */
+    public int steps(final int cell) {
+        return steps[cell];
+    }
+
+    /** Move-cost weighted distance from the cell to the cheapest structure. */
+    public int cost(final int cell) {
+        return cost[cell];
+    }
+
+    /** Cell index of the structure the cheapest route leads to, or -1 without structures. */
+    public int nearest(final int cell) {
+        return nearest[cell];
+    }
+
+    /** First move of the cheapest route to a structure; STILL on a structure. */
+    public Direction next(final int cell) {
+        return Direction.ALL[next[cell]];
+    }
+}
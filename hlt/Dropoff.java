@@ -5,13 +5,11 @@ public class Dropoff extends Entity {
         super(owner, id, position);
     }
 
-    static Dropoff _generate(final PlayerId playerId) {
-        final Input input = Input.readInput();
+    static Dropoff _generate(final PlayerId playerId, final GameMap gameMap) {
+        final EntityId dropoffId = new EntityId(Input.readInt());
+        final int x = Input.readInt();
+        final int y = Input.readInt();
 
-        final EntityId dropoffId = new EntityId(input.getInt());
-        final int x = input.getInt();
-        final int y = input.getInt();
-
-        return new Dropoff(playerId, dropoffId, new Position(x, y));
+        return new Dropoff(playerId, dropoffId, gameMap.position(x, y));
     }
 }
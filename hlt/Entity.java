@@ -3,7 +3,7 @@ package hlt;
 public class Entity {
     public final PlayerId owner;
     public final EntityId id;
-    public final Position position;
+    public Position position;
 
     public Entity(final PlayerId owner, final EntityId id, final Position position) {
         this.owner = owner;
@@ -19,15 +19,14 @@ public class Entity {
         Entity entity = (Entity) o;
 
         if (!owner.equals(entity.owner)) return false;
-        if (!id.equals(entity.id)) return false;
-        return position.equals(entity.position);
+        return id.equals(entity.id);
     }
 
+    // position is left out: ships move in place, and an entity is the same one wherever it stands
     @Override
     public int hashCode() {
         int result = owner.hashCode();
         result = 31 * result + id.hashCode();
-        result = 31 * result + position.hashCode();
         return result;
     }
 }
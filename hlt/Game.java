@@ -2,6 +2,7 @@ package hlt;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Random;
 
 public class Game {
     public int turnNumber;
@@ -9,13 +10,23 @@ public class Game {
     public final ArrayList<Player> players = new ArrayList<>();
     public final Player me;
     public final GameMap gameMap;
+    /** Mining value of every cell for our ships, refreshed every frame. */
+    public final ValueField values;
+    /** Enemy ship counts around every cell, refreshed every frame. */
+    public final InspirationMap inspiration;
+    /** Time left in the current turn, started as soon as the frame arrives. */
+    public final TurnBudget budget = new TurnBudget(TurnBudget.TURN_MILLIS, TurnBudget.SAFETY_MARGIN_MILLIS);
+    /** Every ship in the game, updated in place each frame. */
+    public final ShipRegistry ships;
+
+    private final CommandEncoder encoder = new CommandEncoder();
+    private final Speculator speculator;
 
     public Game() {
         Constants.populateConstants(Input.readLine());
 
-        final Input input = Input.readInput();
-        final int numPlayers = input.getInt();
-        myId = new PlayerId(input.getInt());
+        final int numPlayers = Input.readInt();
+        myId = new PlayerId(Input.readInt());
 
         Log.open(myId.id);
 
@@ -24,6 +35,30 @@ public class Game {
         }
         me = players.get(myId.id);
         gameMap = GameMap._generate();
+
+        for (final Player player : players) {
+            player.distances = new DistanceField(gameMap, player.id, DistanceField.DEFAULT_TURN_COST);
+        }
+        ships = new ShipRegistry(gameMap);
+        ships.addListener(new ShipRegistry.Listener() {
+            // pushed off its route, such as stepping aside for another ship: what it reserved ahead is stale
+            @Override
+            public void moved(final Ship ship, final int from) {
+                if (ship.owner.equals(myId) && !gameMap.paths.isOnRoute(ship.id.id, gameMap.index(ship.position))) {
+                    gameMap.paths.invalidate(ship.id.id);
+                    gameMap.reservations.release(ship.id.id);
+                }
+            }
+
+            @Override
+            public void destroyed(final Ship ship) {
+                gameMap.paths.invalidate(ship.id.id);
+                gameMap.reservations.release(ship.id.id);
+            }
+        });
+        values = new ValueField(gameMap);
+        inspiration = new InspirationMap(gameMap);
+        speculator = new Speculator(gameMap, players, me);
     }
 
     public void ready(final String name) {
@@ -31,40 +66,89 @@ public class Game {
     }
 
     public void updateFrame() {
-        turnNumber = Input.readInput().getInt();
-        Log.log("=============== TURN " + turnNumber + " ================");
+        turnNumber = Input.readInt();
+        budget.start();
+        Log.info("=============== TURN {} ================").arg(turnNumber);
 
-        for (int i = 0; i < players.size(); ++i) {
-            final Input input = Input.readInput();
+        ships.beginFrame();
 
-            final PlayerId currentPlayerId = new PlayerId(input.getInt());
-            final int numShips = input.getInt();
-            final int numDropoffs = input.getInt();
-            final int halite = input.getInt();
+        for (int i = 0; i < players.size(); ++i) {
+            final int currentPlayerId = Input.readInt();
+            final int numShips = Input.readInt();
+            final int numDropoffs = Input.readInt();
+            final int halite = Input.readInt();
 
-            players.get(currentPlayerId.id)._update(numShips, numDropoffs, halite);
+            players.get(currentPlayerId)._update(numShips, numDropoffs, halite, gameMap, ships);
         }
 
         gameMap._update();
+        ships.endFrame();
+
+        analyseFrame();
+    }
 
+    /**
+     * Sets up a made-up frame on the real map for running the planner before ready(): the given number of our
+     * ships on random cells around the shipyard, with random cargo. The map, fields and turn budget are
+     * prepared as for a real frame.
+     */
+    public void warmUpFrame(final Random rng, final int shipCount) {
+        final int RADIUS = 8;
+
+        budget.start();
+        gameMap.beginFrame();
+        me.ships.clear();
+        for (int id = 0; id < shipCount; ++id) {
+            final int x = me.shipyard.position.x + rng.nextInt(2 * RADIUS + 1) - RADIUS;
+            final int y = me.shipyard.position.y + rng.nextInt(2 * RADIUS + 1) - RADIUS;
+            if (gameMap.isOccupied(gameMap.index(x, y))) continue;
+
+            final Ship ship = new Ship(me.id, new EntityId(id), gameMap.position(x, y),
+                    rng.nextInt(Constants.MAX_HALITE));
+            me.ships.put(ship.id, ship);
+            gameMap.markShip(ship);
+        }
+
+        analyseFrame();
+    }
+
+    /** Drops the synthetic ships and whatever the warm-up frames left in the map's caches. */
+    public void endWarmUp() {
+        me.ships.clear();
+        gameMap.resetFrames();
+    }
+
+    // marks every entity on the map and refreshes the per-turn fields
+    private void analyseFrame() {
         for (final Player player : players) {
             for (final Ship ship : player.ships.values()) {
-                gameMap.at(ship).markUnsafe(ship);
+                gameMap.markShip(ship);
             }
 
-            gameMap.at(player.shipyard).structure = player.shipyard;
+            gameMap.markStructure(player.shipyard);
 
             for (final Dropoff dropoff : player.dropoffs.values()) {
-                gameMap.at(dropoff).structure = dropoff;
+                gameMap.markStructure(dropoff);
             }
         }
+
+        inspiration.compute(players, myId);
+        if (!speculator.apply(values, inspiration)) {
+            for (final Player player : players) {
+                player.distances.compute();
+            }
+            values.compute(me.distances, inspiration);
+        }
     }
 
     public void endTurn(final Collection<Command> commands) {
         for (final Command command : commands) {
-            System.out.print(command.command);
-            System.out.print(' ');
+            command.encode(encoder);
         }
-        System.out.println();
+        encoder.flush();
+        Log.flush();
+
+        // the engine has our moves; use the wait for the next frame
+        speculator.start(me, commands, inspiration);
     }
 }
@@ -1,85 +1,306 @@
 package hlt;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 public class GameMap {
     public final int width;
     public final int height;
-    public final MapCell[][] cells;
+    /** Number of cells; cell indices are y * width + x. */
+    public final int size;
+
+    /** Halite per cell. */
+    public final int[] halite;
+    /** Id of the ship planned on each cell, or -1. Only meaningful where the unsafe layer is set. */
+    final int[] shipId;
+    /** Owner of the ship planned on each cell, or -1. */
+    final int[] shipOwner;
+    /** Owner of the structure on each cell. Only meaningful where the structure layer is set. */
+    final int[] structureOwner;
+    /** Frame in which the halite of each cell last changed. */
+    final int[] lastChanged;
+    /** Cells whose halite changed in the frame just read, the first changedCount entries. */
+    private final int[] changed;
+    private int changedCount;
+    /** Number of frames read so far. */
+    int frame;
+
+    /** Cells holding a ship at the start of the turn, as reported by the engine. */
+    final long[] occupied;
+    /** Cells a ship will occupy after this turn's moves, as planned so far. */
+    final long[] unsafe;
+    /** Cells holding a shipyard or dropoff. */
+    final long[] structure;
+
+    /** Canonical position of every cell, so normalizing and moving never allocate. */
+    private final Position[] positions;
+    /** Index of the cell reached from each cell in each direction, at index * 5 + direction ordinal. */
+    private final int[] neighbours;
+    private final MapCell[] cells;
+
+    /** Toroidal Manhattan distance for every (dx, dy) offset, indexed by dy * width + dx. */
+    private final int[] manhattan;
+    /** Toroidal Chebyshev distance for every (dx, dy) offset. */
+    private final int[] chebyshev;
+    /** Bitmask over Direction ordinals of the moves that lie on a shortest path, for every (dx, dy) offset. */
+    private final byte[] shortestMoves;
+
+    private final BreadthFirstSearch search;
+    private final PathFinder pathFinder;
+    private final int[] route;
+    /** Routes of our ships, kept across turns. */
+    public final PathCache paths = new PathCache();
+    /** Cells claimed as a halite target by one of our ships; safe to claim from several threads. */
+    public final ClaimTable claims;
+    /** Cells our ships' routes will pass through over the next few turns. */
+    public final ReservationTable reservations;
+    /** Region halite sums, kept current by _update. */
+    public final SummedAreaTable sums;
+    /** Cells grouped by halite, kept current by _update. */
+    public final HaliteIndex haliteIndex;
+
+    private int richestFrame = -1;
+    private final int[] richestCells = new int[8];
+    private int richestCount;
+    private Ship[] ships = new Ship[256];
 
     public GameMap(final int width, final int height) {
         this.width = width;
         this.height = height;
-
-        cells = new MapCell[height][];
+        this.size = width * height;
+
+        halite = new int[size];
+        shipId = new int[size];
+        shipOwner = new int[size];
+        structureOwner = new int[size];
+        lastChanged = new int[size];
+        changed = new int[size];
+
+        final int words = (size + 63) >>> 6;
+        occupied = new long[words];
+        unsafe = new long[words];
+        structure = new long[words];
+
+        positions = new Position[size];
+        neighbours = new int[size * 5];
+        cells = new MapCell[size];
         for (int y = 0; y < height; ++y) {
-            cells[y] = new MapCell[width];
+            for (int x = 0; x < width; ++x) {
+                final int index = y * width + x;
+                positions[index] = new Position(x, y);
+                cells[index] = new MapCell(this, positions[index], index);
+
+                for (final Direction d : Direction.ALL) {
+                    neighbours[index * 5 + d.ordinal()] = index(x + d.dx, y + d.dy);
+                }
+            }
         }
+
+        manhattan = new int[size];
+        chebyshev = new int[size];
+        shortestMoves = new byte[size];
+        for (int dy = 0; dy < height; ++dy) {
+            for (int dx = 0; dx < width; ++dx) {
+                final int offset = dy * width + dx;
+                final int toroidal_dx = Math.min(dx, width - dx);
+                final int toroidal_dy = Math.min(dy, height - dy);
+                manhattan[offset] = toroidal_dx + toroidal_dy;
+                chebyshev[offset] = Math.max(toroidal_dx, toroidal_dy);
+
+                int mask = 0;
+                if (dx != 0) {
+                    if (dx <= width - dx) mask |= 1 << Direction.EAST.ordinal();
+                    if (dx >= width - dx) mask |= 1 << Direction.WEST.ordinal();
+                }
+                if (dy != 0) {
+                    if (dy <= height - dy) mask |= 1 << Direction.SOUTH.ordinal();
+                    if (dy >= height - dy) mask |= 1 << Direction.NORTH.ordinal();
+                }
+                shortestMoves[offset] = (byte) mask;
+            }
+        }
+
+        Arrays.fill(shipId, -1);
+        Arrays.fill(shipOwner, -1);
+
+        search = new BreadthFirstSearch(this);
+        pathFinder = new PathFinder(this);
+        route = new int[size];
+        claims = new ClaimTable(size);
+        reservations = new ReservationTable(size);
+        sums = new SummedAreaTable(this);
+        haliteIndex = new HaliteIndex(this);
+    }
+
+    public int index(final int x, final int y) {
+        final int nx = x >= 0 && x < width ? x : ((x % width) + width) % width;
+        final int ny = y >= 0 && y < height ? y : ((y % height) + height) % height;
+        return ny * width + nx;
+    }
+
+    public int index(final Position position) {
+        return index(position.x, position.y);
+    }
+
+    public Position position(final int index) {
+        return positions[index];
+    }
+
+    public Position position(final int x, final int y) {
+        return positions[index(x, y)];
+    }
+
+    public int neighbour(final int index, final Direction direction) {
+        return neighbours[index * 5 + direction.ordinal()];
+    }
+
+    public Position offset(final Position position, final Direction direction) {
+        return positions[neighbours[index(position) * 5 + direction.ordinal()]];
+    }
+
+    public MapCell at(final int index) {
+        return cells[index];
     }
 
     public MapCell at(final Position position) {
-        final Position normalized = normalize(position);
-        return cells[normalized.y][normalized.x];
+        return cells[index(position)];
     }
 
     public MapCell at(final Entity entity) {
         return at(entity.position);
     }
 
-    public int calculateDistance(final Position source, final Position target) {
-        final Position normalizedSource = normalize(source);
-        final Position normalizedTarget = normalize(target);
+    public boolean isOccupied(final int index) {
+        return test(occupied, index);
+    }
+
+    public boolean isUnsafe(final int index) {
+        return test(unsafe, index);
+    }
+
+    public boolean isBooked(final int index) {
+        return claims.isClaimed(index);
+    }
+
+    public boolean hasStructure(final int index) {
+        return test(structure, index);
+    }
 
-        final int dx = Math.abs(normalizedSource.x - normalizedTarget.x);
-        final int dy = Math.abs(normalizedSource.y - normalizedTarget.y);
+    public Ship shipAt(final int index) {
+        return test(unsafe, index) ? ships[shipId[index]] : null;
+    }
+
+    public void markUnsafe(final int index, final Ship ship) {
+        set(unsafe, index);
+        shipId[index] = ship.id.id;
+        shipOwner[index] = ship.owner.id;
+        if (ship.id.id >= ships.length) {
+            ships = Arrays.copyOf(ships, Math.max(ships.length * 2, ship.id.id + 1));
+        }
+        ships[ship.id.id] = ship;
+    }
+
+    public void clearUnsafe(final int index) {
+        clear(unsafe, index);
+        shipId[index] = -1;
+        shipOwner[index] = -1;
+    }
+
+    /**
+     * Books the cell for the ship for good; no other claim can take it this turn. Returns false if another
+     * ship has already booked it.
+     */
+    public boolean book(final int index, final int shipId) {
+        return claims.claim(index, shipId, ClaimTable.FIXED);
+    }
+
+    void markShip(final Ship ship) {
+        final int index = index(ship.position);
+        set(occupied, index);
+        markUnsafe(index, ship);
+    }
+
+    void markStructure(final Entity entity) {
+        final int index = index(entity.position);
+        set(structure, index);
+        structureOwner[index] = entity.owner.id;
+    }
+
+    static boolean test(final long[] layer, final int index) {
+        return (layer[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static void set(final long[] layer, final int index) {
+        layer[index >>> 6] |= 1L << index;
+    }
+
+    static void clear(final long[] layer, final int index) {
+        layer[index >>> 6] &= ~(1L << index);
+    }
+
+    /** Offset from one cell to another, for indexing the distance and direction tables. */
+    public int offset(final int source, final int target) {
+        int dx = positions[target].x - positions[source].x;
+        int dy = positions[target].y - positions[source].y;
+        if (dx < 0) dx += width;
+        if (dy < 0) dy += height;
+        return dy * width + dx;
+    }
+
+    public int manhattanDistance(final int source, final int target) {
+        return manhattan[offset(source, target)];
+    }
 
-        final int toroidal_dx = Math.min(dx, width - dx);
-        final int toroidal_dy = Math.min(dy, height - dy);
+    public int chebyshevDistance(final int source, final int target) {
+        return chebyshev[offset(source, target)];
+    }
+
+    public int calculateDistance(final Position source, final Position target) {
+        // return manhattanDistance(index(source), index(target));
+		return chebyshevDistance(index(source), index(target));
+    }
 
-        // return toroidal_dx + toroidal_dy;
-		return Math.max(toroidal_dx, toroidal_dy);
+    /** Bitmask over Direction ordinals of every move on a shortest path from source to target; 0 if equal. */
+    public int shortestMoves(final int source, final int target) {
+        return shortestMoves[offset(source, target)];
+    }
+
+    public static boolean hasMove(final int moves, final Direction direction) {
+        return (moves & (1 << direction.ordinal())) != 0;
     }
 
     public Position normalize(final Position position) {
-        final int x = ((position.x % width) + width) % width;
-        final int y = ((position.y % height) + height) % height;
-        return new Position(x, y);
+        return positions[index(position)];
     }
 
     public ArrayList<Direction> getUnsafeMoves(final Position source, final Position destination) {
         final ArrayList<Direction> possibleMoves = new ArrayList<>();
 
-        final Position normalizedSource = normalize(source);
-        final Position normalizedDestination = normalize(destination);
-
-        final int dx = Math.abs(normalizedSource.x - normalizedDestination.x);
-        final int dy = Math.abs(normalizedSource.y - normalizedDestination.y);
-        final int wrapped_dx = width - dx;
-        final int wrapped_dy = height - dy;
-
-        if (normalizedSource.x < normalizedDestination.x) {
-            possibleMoves.add(dx > wrapped_dx ? Direction.WEST : Direction.EAST);
-        } else if (normalizedSource.x > normalizedDestination.x) {
-            possibleMoves.add(dx < wrapped_dx ? Direction.WEST : Direction.EAST);
+        final int moves = shortestMoves(index(source), index(destination));
+        if (hasMove(moves, Direction.EAST)) {
+            possibleMoves.add(Direction.EAST);
+        } else if (hasMove(moves, Direction.WEST)) {
+            possibleMoves.add(Direction.WEST);
         }
 
-        if (normalizedSource.y < normalizedDestination.y) {
-            possibleMoves.add(dy > wrapped_dy ? Direction.NORTH : Direction.SOUTH);
-        } else if (normalizedSource.y > normalizedDestination.y) {
-            possibleMoves.add(dy < wrapped_dy ? Direction.NORTH : Direction.SOUTH);
+        if (hasMove(moves, Direction.SOUTH)) {
+            possibleMoves.add(Direction.SOUTH);
+        } else if (hasMove(moves, Direction.NORTH)) {
+            possibleMoves.add(Direction.NORTH);
         }
 
         return possibleMoves;
     }
 
     public Direction naiveNavigate(final Ship ship, final Position destination) {
-        // getUnsafeMoves normalizes for us
-        for (final Direction direction : getUnsafeMoves(ship.position, destination)) {
-            final Position targetPos = normalize(ship.position.directionalOffset(direction));
-            if (!at(targetPos).isOccupied()) {
-                at(targetPos).markUnsafe(ship);
+        final int origin = index(ship.position);
+        final int moves = shortestMoves(origin, index(destination));
+        for (final Direction direction : Direction.ALL_CARDINALS) {
+            if (!hasMove(moves, direction)) continue;
+
+            final int target = neighbours[origin * 5 + direction.ordinal()];
+            if (!isUnsafe(target)) {
+                markUnsafe(target, ship);
                 return direction;
             }
         }
@@ -97,18 +318,19 @@ public class GameMap {
 		// Position nextPosition = ship.position;
 		Direction nextDirection = Direction.STILL;
 		
+		final int origin = index(ship.position);
+		final int target = index(destination);
 		for (Direction d: Direction.ALL_CARDINALS) {
-			Position p = normalize(ship.position.directionalOffset(d));
-			MapCell cell = at(p);
+			int cell = neighbours[origin * 5 + d.ordinal()];
 			// skip if occupied by enemy, because we dont know when thhey will make a move
 			// OR if not patience & occupied by whoever
-			if (cell.isOccupied()) {
-				if (!patience || !cell.ship.owner.equals(ship.owner)) {
+			if (isUnsafe(cell)) {
+				if (!patience || shipOwner[cell] != ship.owner.id) {
 					continue;
 				}
 			}
 			
-			int distTest = calculateDistance(p, destination);
+			int distTest = chebyshevDistance(cell, target);
 			if (distTest < dist) {
 				dist = distTest;
 				// nextPosition = p;
@@ -118,7 +340,7 @@ public class GameMap {
 		
 		// if has enough halite to move, go
 		if (nextDirection != Direction.STILL) {
-            int cost = (int) Math.ceil(at(ship.position).halite * 0.1);
+            int cost = (int) Math.ceil(halite[origin] * 0.1);
             if (cost == 0 || ship.halite > cost) {
 				return nextDirection;
             }
@@ -127,105 +349,235 @@ public class GameMap {
 		return Direction.STILL;
 	}
 	
+	public Direction getNextDirection(final Ship ship, final DistanceField field)
+	{
+		final int origin = index(ship.position);
+		Direction nextDirection = field.next(origin);
+		if (nextDirection == Direction.STILL) {
+			return Direction.STILL;
+		}
+
+		// the cheapest route is blocked by an enemy, take the cheapest neighbour that is not
+		int cell = neighbours[origin * 5 + nextDirection.ordinal()];
+		if (isUnsafe(cell) && shipOwner[cell] != ship.owner.id) {
+			int best = DistanceField.UNREACHABLE;
+			nextDirection = Direction.STILL;
+			for (Direction d: Direction.ALL_CARDINALS) {
+				cell = neighbours[origin * 5 + d.ordinal()];
+				if (isUnsafe(cell) && shipOwner[cell] != ship.owner.id) continue;
+
+				if (field.cost(cell) < best) {
+					best = field.cost(cell);
+					nextDirection = d;
+				}
+			}
+		}
+
+		// if has enough halite to move, go
+		if (nextDirection != Direction.STILL) {
+			int cost = halite[origin] / Constants.MOVE_COST_RATIO;
+			if (cost == 0 || ship.halite >= cost) {
+				return nextDirection;
+			}
+		}
+
+		return Direction.STILL;
+	}
+
+	/**
+	 * Next move along the ship's cheapest route to the target, reusing the route planned on an earlier turn
+	 * while it is still valid. Each move is charged turnCost plus the halite it burns, and the route is
+	 * reserved for the next few turns so other ships plan around it.
+	 */
+	public Direction navigate(final Ship ship, final int target, final int turnCost)
+	{
+		// drop our own reservations first so the route is checked and planned against the other ships only,
+		// and so a ship that has arrived holds none
+		reservations.release(ship.id.id);
+		final int origin = index(ship.position);
+		if (origin == target) {
+			return Direction.STILL;
+		}
+		if (!paths.follow(ship.id.id, ship.owner, origin, target, this)) {
+			final int length = pathFinder.find(origin, target, ship.id.id, ship.owner, turnCost, route);
+			if (length < 2) {
+				return Direction.STILL;
+			}
+			paths.store(ship.id.id, target, route, length, frame);
+		}
+		paths.reserve(ship.id.id, reservations);
+
+		// if has enough halite to move, go
+		int cost = halite[origin] / Constants.MOVE_COST_RATIO;
+		if (cost == 0 || ship.halite >= cost) {
+			return firstMove(origin, paths.next(ship.id.id));
+		}
+
+		return Direction.STILL;
+	}
+
+	/** Move that takes a ship from one cell to an adjacent one. */
+	public Direction firstMove(final int source, final int target) {
+		final int moves = shortestMoves(source, target);
+		return moves == 0 ? Direction.STILL : Direction.ALL[Integer.numberOfTrailingZeros(moves)];
+	}
+
 	public Direction getNextHaliteDirection(final Ship ship) {
 		return getNextHaliteDirection(ship, 51);
 	}
 	public Direction getNextHaliteDirection(final Ship ship, final int targetHalite){
 		final int MAX_RANGE = 10;
-        final ArrayList<Position> frontier = new ArrayList<>();
-        final ArrayList<Position> visited = new ArrayList<>();
+		final int origin = index(ship.position);
 
-        frontier.add(ship.position);
-        visited.add(ship.position);
+		int nextCell = -1;
+		int altCell = -1;
+		int altHalite = 0;
 
-        boolean nodeFound = false;
+		search.start(origin, MAX_RANGE);
+		for (int cell; (cell = search.next()) >= 0;) {
+			if (cell == origin || isBooked(cell)) continue;
 
-        int altHalite = 0;
-        Position nextPosition = ship.position;
-        Position altPosition = ship.position;
-        while (frontier.size() > 0 && !nodeFound)
-        {
-            Position currentPosition = frontier.remove(0);
-			if (Math.abs(currentPosition.x - ship.position.x) > MAX_RANGE && Math.abs(currentPosition.y - ship.position.y) > MAX_RANGE) {
+			if (halite[cell] >= targetHalite) {
+				nextCell = cell;
+				// find the most: dont breakdance
+				// find closest: break leg
 				break;
 			}
-			
-            for (Direction d: Direction.ALL_CARDINALS) {
-                Position p = normalize(currentPosition.directionalOffset(d));
-                if (!visited.contains(p)) {
-                    frontier.add(p);
-                    visited.add(p);
-                }
 
-                MapCell cell = at(p);
-                if (cell.booked) continue;
+			if (halite[cell] > altHalite) {
+				altHalite = halite[cell];
+				altCell = cell;
+			}
+		}
 
-                if (cell.halite >= targetHalite) {
-                    nodeFound = true;
-                    nextPosition = p;
+		// check if really found the node
+		if (nextCell >= 0 && cells[nextCell].book(ship))
+		{
+			return navigate(ship, nextCell, DistanceField.DEFAULT_TURN_COST);
+		}
 
-					// find the most: dont breakdance
-					// find closest: break leg
-                    break;
-                }
+		// nothing rich enough nearby, take the closest rich cell anywhere
+		nextCell = haliteIndex.nearest(origin, targetHalite);
+		if (nextCell >= 0 && cells[nextCell].book(ship))
+		{
+			return navigate(ship, nextCell, DistanceField.DEFAULT_TURN_COST);
+		}
+		// else check alternative
+		if (altCell >= 0 && cells[altCell].book(ship))
+		{
+			return navigate(ship, altCell, DistanceField.DEFAULT_TURN_COST);
+		}
 
-                if (cell.halite > altHalite) {
-                    altPosition = p;
-                }
-            }
-        }
-		
-        // check if really found the node
-        if (nodeFound)
-        {
-			at(nextPosition).book(ship);
-            return getNextDirection(ship, nextPosition);
-        }
-        // else check alternative
-        else if (!altPosition.equals(ship.position))
-        {
-			at(altPosition).book(ship);
-            return getNextDirection(ship, altPosition);
-        }
+		// nothing worth mining within range, head for the richest part of the map that nobody else is heading for
+		final int region = richestRegionCenter();
+		if (region >= 0 && region != origin && cells[region].book(ship)) {
+			return navigate(ship, region, DistanceField.DEFAULT_TURN_COST);
+		}
+		return Direction.STILL;
+	}
 
-		// should not reached here cause of altPosition
-        return Direction.STILL;
+	/**
+	 * Center cell of the richest 8x8 region whose center is not booked yet, or -1. The regions are looked up
+	 * once per frame, so ships falling back on them spread over the richest few instead of piling onto one.
+	 */
+	public int richestRegionCenter() {
+		if (richestFrame != frame) {
+			findRichestRegions();
+			richestFrame = frame;
+		}
+
+		for (int i = 0; i < richestCount; ++i) {
+			if (!isBooked(richestCells[i])) {
+				return richestCells[i];
+			}
+		}
+		return -1;
 	}
 
+	private void findRichestRegions() {
+		final int REGION_SIZE = 8;
+		richestCount = sums.richestRegions(REGION_SIZE, richestCells);
+		for (int i = 0; i < richestCount; ++i) {
+			final Position corner = positions[richestCells[i]];
+			richestCells[i] = index(corner.x + REGION_SIZE / 2, corner.y + REGION_SIZE / 2);
+		}
+	}
+
+    /** Clears the per-frame layers and moves the reservations on to the next frame. */
+    void beginFrame() {
+        changedCount = 0;
+        Arrays.fill(occupied, 0L);
+        claims.clear();
+        Arrays.fill(unsafe, 0L);
+        Arrays.fill(structure, 0L);
+        Arrays.fill(shipId, -1);
+        Arrays.fill(shipOwner, -1);
+
+        ++frame;
+        reservations.roll(frame);
+    }
+
+    /** Number of cells whose halite changed in the frame just read. */
+    int changedCount() {
+        return changedCount;
+    }
+
+    /** One of the cells whose halite changed in the frame just read. */
+    int changed(final int i) {
+        return changed[i];
+    }
+
+    /**
+     * Forgets every frame seen so far, such as the synthetic ones played during warm-up, and finds the initial
+     * clusters: the richest regions of the starting map, kept for the first frame unless its halite changes.
+     */
+    void resetFrames() {
+        frame = 0;
+        findRichestRegions();
+        richestFrame = 1;
+        reservations.clear();
+        paths.clear();
+    }
+
     void _update() {
-        for (int y = 0; y < height; ++y) {
-            for (int x = 0; x < width; ++x) {
-                cells[y][x].ship = null;
-				cells[y][x].booked = false;
-            }
-        }
+        beginFrame();
 
-        final int updateCount = Input.readInput().getInt();
+        final int updateCount = Input.readInt();
 
         for (int i = 0; i < updateCount; ++i) {
-            final Input input = Input.readInput();
-            final int x = input.getInt();
-            final int y = input.getInt();
-
-            cells[y][x].halite = input.getInt();
+            final int x = Input.readInt();
+            final int y = Input.readInt();
+
+            final int cell = y * width + x;
+            final int value = Input.readInt();
+            if (halite[cell] != value) {
+                halite[cell] = value;
+                lastChanged[cell] = frame;
+                changed[changedCount++] = cell;
+                sums.markStale();
+                richestFrame = -1;
+                haliteIndex.update(cell);
+            }
         }
+
+        sums.refresh();
     }
 
     static GameMap _generate() {
-        final Input mapInput = Input.readInput();
-        final int width = mapInput.getInt();
-        final int height = mapInput.getInt();
+        final int width = Input.readInt();
+        final int height = Input.readInt();
 
         final GameMap map = new GameMap(width, height);
 
         for (int y = 0; y < height; ++y) {
-            final Input rowInput = Input.readInput();
-
             for (int x = 0; x < width; ++x) {
-                final int halite = rowInput.getInt();
-                map.cells[y][x] = new MapCell(new Position(x, y), halite);
+                map.halite[y * width + x] = Input.readInt();
             }
         }
+        map.sums.refresh();
+        for (int cell = 0; cell < map.size; ++cell) {
+            map.haliteIndex.update(cell);
+        }
 
         return map;
     }
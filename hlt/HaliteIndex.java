@@ -0,0 +1,155 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * Cells grouped by TILE_SIZE square tiles and halite buckets of BUCKET_WIDTH, as intrusive doubly linked lists
+ * over cell indices. Moving a cell between buckets is O(1), so _update keeps the index current from the changed
+ * cells alone. nearest() only walks the buckets at or above its threshold, visits tiles closest first and stops
+ * once no remaining tile can beat the best cell found.
+ */
+public class HaliteIndex {
+    public static final int BUCKET_WIDTH = 32;
+    private static final int BUCKETS = 32;
+    private static final int TILE_SIZE = 8;
+
+    private final GameMap map;
+    private final int tilesX;
+    private final int tiles;
+    // list heads per tile and bucket, at tile * BUCKETS + bucket
+    private final int[] head;
+    // per tile, bit b is set while the tile has a cell in bucket b
+    private final int[] occupied;
+    private final int[] next;
+    private final int[] previous;
+    private final int[] bucket;
+    private final int[] tileOf;
+    // per origin tile, every tile ordered by its smallest possible distance, and those distances
+    private final int[] order;
+    private final int[] gap;
+
+    public HaliteIndex(final GameMap map) {
+        this.map = map;
+        tilesX = (map.width + TILE_SIZE - 1) / TILE_SIZE;
+        final int tilesY = (map.height + TILE_SIZE - 1) / TILE_SIZE;
+        tiles = tilesX * tilesY;
+
+        head = new int[tiles * BUCKETS];
+        occupied = new int[tiles];
+        next = new int[map.size];
+        previous = new int[map.size];
+        bucket = new int[map.size];
+        tileOf = new int[map.size];
+        Arrays.fill(head, -1);
+        Arrays.fill(bucket, -1);
+        for (int y = 0; y < map.height; ++y) {
+            for (int x = 0; x < map.width; ++x) {
+                tileOf[map.index(x, y)] = (y / TILE_SIZE) * tilesX + x / TILE_SIZE;
+            }
+        }
+
+        order = new int[tiles * tiles];
+        gap = new int[tiles * tiles];
+        final Integer[] sorted = new Integer[tiles];
+        final int[] distance = new int[tiles];
+        for (int from = 0; from < tiles; ++from) {
+            for (int to = 0; to < tiles; ++to) {
+                sorted[to] = to;
+                distance[to] = axisGap(from % tilesX, to % tilesX, map.width)
+                        + axisGap(from / tilesX, to / tilesX, map.height);
+            }
+            Arrays.sort(sorted, (a, b) -> Integer.compare(distance[a], distance[b]));
+            for (int i = 0; i < tiles; ++i) {
+                order[from * tiles + i] = sorted[i];
+                gap[from * tiles + i] = distance[sorted[i]];
+            }
+        }
+    }
+
+    public static int bucketOf(final int halite) {
+        return Math.min(halite / BUCKET_WIDTH, BUCKETS - 1);
+    }
+
+    // smallest wrapped distance between any cell of tile a and any cell of tile b along one axis
+    private static int axisGap(final int a, final int b, final int length) {
+        if (a == b) {
+            return 0;
+        }
+        final int aStart = a * TILE_SIZE;
+        final int aEnd = Math.min(aStart + TILE_SIZE, length) - 1;
+        final int bStart = b * TILE_SIZE;
+        final int bEnd = Math.min(bStart + TILE_SIZE, length) - 1;
+        return Math.min(Math.min(wrapped(aStart, bEnd, length), wrapped(aEnd, bStart, length)),
+                Math.min(wrapped(aStart, bStart, length), wrapped(aEnd, bEnd, length)));
+    }
+
+    private static int wrapped(final int a, final int b, final int length) {
+        final int d = Math.abs(a - b);
+        return Math.min(d, length - d);
+    }
+
+    /** Moves the cell to the bucket of its current halite. */
+    public void update(final int cell) {
+        final int target = bucketOf(map.halite[cell]);
+        if (bucket[cell] == target) {
+            return;
+        }
+
+        if (bucket[cell] >= 0) {
+            unlink(cell);
+        }
+
+        final int list = tileOf[cell] * BUCKETS + target;
+        bucket[cell] = target;
+        previous[cell] = -1;
+        next[cell] = head[list];
+        if (head[list] >= 0) {
+            previous[head[list]] = cell;
+        }
+        head[list] = cell;
+        occupied[tileOf[cell]] |= 1 << target;
+    }
+
+    /** Closest unbooked cell with at least minHalite, or -1. */
+    public int nearest(final int origin, final int minHalite) {
+        final int first = bucketOf(minHalite);
+        final int from = tileOf[origin] * tiles;
+
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < tiles && gap[from + i] < bestDistance; ++i) {
+            final int tile = order[from + i];
+            int buckets = occupied[tile] >>> first << first;
+            while (buckets != 0) {
+                final int b = Integer.numberOfTrailingZeros(buckets);
+                buckets &= buckets - 1;
+                for (int cell = head[tile * BUCKETS + b]; cell >= 0; cell = next[cell]) {
+                    if (map.halite[cell] < minHalite || map.isBooked(cell)) continue;
+
+                    final int distance = map.manhattanDistance(origin, cell);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = cell;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private void unlink(final int cell) {
+        final int b = bucket[cell];
+        final int list = tileOf[cell] * BUCKETS + b;
+        if (previous[cell] >= 0) {
+            next[previous[cell]] = next[cell];
+        } else {
+            head[list] = next[cell];
+        }
+        if (next[cell] >= 0) {
+            previous[next[cell]] = previous[cell];
+        }
+        if (head[list] < 0) {
+            occupied[tileOf[cell]] &= ~(1 << b);
+        }
+    }
+}
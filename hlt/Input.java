@@ -1,42 +1,81 @@
 package hlt;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 public class Input {
-    private final String[] input;
-    private int current;
+    private static final int BUFFER_SIZE = 1 << 16;
 
-    public Input(final String line) {
-        input = line.split(" ");
-    }
+    private static final InputStream stream = System.in;
+    private static final byte[] buffer = new byte[BUFFER_SIZE];
+    private static int length;
+    private static int pointer;
 
-    public int getInt() {
-        return Integer.parseInt(input[current++]);
+    private Input() {
     }
 
-    public static Input readInput() {
-        return new Input(readLine());
+    /** Reads the next whitespace separated integer straight from the byte buffer. */
+    public static int readInt() {
+        int b = read();
+        while (b == ' ' || b == '\n' || b == '\r') {
+            b = read();
+        }
+
+        boolean negative = false;
+        if (b == '-') {
+            negative = true;
+            b = read();
+        }
+
+        int value = 0;
+        while (b >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            b = read();
+        }
+
+        if (b != ' ' && b != '\n' && b != '\r') {
+            Log.log("Error: input: unexpected byte " + b + " while reading an integer.");
+            throw new IllegalStateException();
+        }
+
+        return negative ? -value : value;
     }
 
     public static String readLine() {
-        try {
-            final StringBuilder builder = new StringBuilder();
-
-            int buffer;
-            for (; (buffer = System.in.read()) >= 0;) {
-                if (buffer == '\n') {
-                    break;
-                }
-                if (buffer == '\r') {
-                    // Ignore carriage return if on windows for manual testing.
-                    continue;
-                }
-                builder.append((char)buffer);
+        final StringBuilder builder = new StringBuilder();
+
+        int b;
+        while ((b = read()) != '\n') {
+            if (b == '\r') {
+                // Ignore carriage return if on windows for manual testing.
+                continue;
             }
+            builder.append((char)b);
+        }
+
+        return builder.toString();
+    }
+
+    private static int read() {
+        if (pointer == length) {
+            fill();
+        }
+        return buffer[pointer++];
+    }
+
+    private static void fill() {
+        try {
+            length = stream.read(buffer, 0, BUFFER_SIZE);
+        } catch (final IOException e) {
+            length = -1;
+        }
 
-            return builder.toString();
-        } catch (final Exception e) {
+        if (length <= 0) {
             Log.log("Input connection from server closed. Exiting...");
+            // publish on the bot thread; the shutdown hook only drains what is already published
+            Log.flush();
             System.exit(0);
-            throw new IllegalStateException(e);
         }
+        pointer = 0;
     }
 }
@@ -0,0 +1,137 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Number of enemy ships within INSPIRATION_RADIUS (Manhattan, wrapping) of every cell, rebuilt each turn.
+ * Enemy ships are counted per cell, then every diagonal gets running sums of radius + 1 cells. The diamond of
+ * the first column is summed directly, and sliding it one column right adds its new right edge and drops its
+ * old left edge, two diagonal runs each, so the pass is O(W * H) regardless of radius and ship count.
+ * Assumes the diamond fits the map (2 * radius + 1 cells wide and tall), which holds for every Halite map.
+ * The cells whose inspired mark flipped are listed, so the Speculator only patches those.
+ */
+public class InspirationMap {
+    private final GameMap map;
+    private final int[] ships;
+    /** Ships on the radius + 1 cells from each cell up-left along its diagonal. */
+    private final int[] diagonal;
+    /** Ships on the radius + 1 cells from each cell down-left along its anti-diagonal. */
+    private final int[] antiDiagonal;
+    private final int[] count;
+    /** Cells marked inspired by the last compute(). */
+    private final long[] inspired;
+    /** Cells whose inspired mark flipped in the last compute(), the first changedCount entries. */
+    private final int[] changed;
+    private int changedCount;
+
+    public InspirationMap(final GameMap map) {
+        this.map = map;
+        ships = new int[map.size];
+        diagonal = new int[map.size];
+        antiDiagonal = new int[map.size];
+        count = new int[map.size];
+        inspired = new long[(map.size + 63) >>> 6];
+        changed = new int[map.size];
+    }
+
+    public void compute(final List<Player> players, final PlayerId me) {
+        Arrays.fill(ships, 0);
+        for (final Player player : players) {
+            if (player.id.equals(me)) continue;
+            for (final Ship ship : player.ships.values()) {
+                ++ships[map.index(ship.position)];
+            }
+        }
+
+        final int width = map.width;
+        final int height = map.height;
+        final int radius = Constants.INSPIRATION_RADIUS;
+
+        // diagonal runs: the first column directly, every other one from its left neighbour on the same diagonal
+        for (int y = 0; y < height; ++y) {
+            int down = 0;
+            int up = 0;
+            for (int k = 0; k <= radius; ++k) {
+                down += ships[at(-k, y - k)];
+                up += ships[at(-k, y + k)];
+            }
+            diagonal[y * width] = down;
+            antiDiagonal[y * width] = up;
+        }
+        for (int x = 1; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                diagonal[y * width + x] = diagonal[at(x - 1, y - 1)] + ships[y * width + x]
+                        - ships[at(x - 1 - radius, y - 1 - radius)];
+                antiDiagonal[y * width + x] = antiDiagonal[at(x - 1, y + 1)] + ships[y * width + x]
+                        - ships[at(x - 1 - radius, y + 1 + radius)];
+            }
+        }
+
+        for (int y = 0; y < height; ++y) {
+            int total = 0;
+            for (int dy = -radius; dy <= radius; ++dy) {
+                final int span = radius - Math.abs(dy);
+                for (int dx = -span; dx <= span; ++dx) {
+                    total += ships[at(dx, y + dy)];
+                }
+            }
+            count[y * width] = total;
+
+            for (int x = 0; x + 1 < width; ++x) {
+                // the right edge of the diamond around x + 1, its tip counted by both runs
+                final int right = at(x + 1 + radius, y);
+                total += diagonal[right] + antiDiagonal[right] - ships[right];
+                // the left edge of the diamond around x, its tip counted by both runs
+                total -= antiDiagonal[at(x, y - radius)] + diagonal[at(x, y + radius)] - ships[at(x - radius, y)];
+                count[y * width + x + 1] = total;
+            }
+        }
+
+        changedCount = 0;
+        for (int cell = 0; cell < map.size; ++cell) {
+            final boolean now = isInspired(cell);
+            if (now == GameMap.test(inspired, cell)) continue;
+
+            if (now) {
+                GameMap.set(inspired, cell);
+            } else {
+                GameMap.clear(inspired, cell);
+            }
+            changed[changedCount++] = cell;
+        }
+    }
+
+    /** Enemy ships within the inspiration radius of the cell. */
+    public int count(final int cell) {
+        return count[cell];
+    }
+
+    public boolean isInspired(final int cell) {
+        return Constants.INSPIRATION_ENABLED && count[cell] >= Constants.INSPIRATION_SHIP_COUNT;
+    }
+
+    /** Copies the inspired marks into a bitset over cell indices. */
+    void copyInspired(final long[] out) {
+        System.arraycopy(inspired, 0, out, 0, inspired.length);
+    }
+
+    /** Number of cells whose inspired mark flipped in the last compute(). */
+    int changedCount() {
+        return changedCount;
+    }
+
+    /** One of the cells whose inspired mark flipped in the last compute(). */
+    int changed(final int i) {
+        return changed[i];
+    }
+
+    // index of x, y wrapped onto the map, for offsets of at most one map size
+    private int at(final int x, final int y) {
+        return wrap(y, map.height) * map.width + wrap(x, map.width);
+    }
+
+    private static int wrap(final int value, final int bound) {
+        return value < 0 ? value + bound : value >= bound ? value - bound : value;
+    }
+}
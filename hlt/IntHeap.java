@@ -0,0 +1,87 @@
+package hlt;
+
+import java.util.Arrays;
+
+/** Indexed binary min-heap of cell indices keyed by int priorities, with decrease-key. Reused across searches. */
+public class IntHeap {
+    private final int[] heap;
+    private final int[] keys;
+    private final int[] slot;
+    private int size;
+
+    public IntHeap(final int capacity) {
+        heap = new int[capacity];
+        keys = new int[capacity];
+        slot = new int[capacity];
+        Arrays.fill(slot, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; ++i) {
+            slot[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /** Inserts the cell, or lowers its key if it is already queued with a higher one. */
+    public void push(final int cell, final int key) {
+        int i = slot[cell];
+        if (i < 0) {
+            i = size++;
+        } else if (key >= keys[cell]) {
+            return;
+        }
+        keys[cell] = key;
+        siftUp(i, cell);
+    }
+
+    /** Removes and returns the cell with the lowest key. */
+    public int pop() {
+        final int top = heap[0];
+        slot[top] = -1;
+
+        final int last = heap[--size];
+        if (size > 0) {
+            siftDown(0, last);
+        }
+        return top;
+    }
+
+    private void siftUp(int i, final int cell) {
+        final int key = keys[cell];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            final int other = heap[parent];
+            if (keys[other] <= key) break;
+
+            heap[i] = other;
+            slot[other] = i;
+            i = parent;
+        }
+        heap[i] = cell;
+        slot[cell] = i;
+    }
+
+    private void siftDown(int i, final int cell) {
+        final int key = keys[cell];
+        final int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                ++child;
+            }
+            final int other = heap[child];
+            if (key <= keys[other]) break;
+
+            heap[i] = other;
+            slot[other] = i;
+            i = child;
+        }
+        heap[i] = cell;
+        slot[cell] = i;
+    }
+}
@@ -1,14 +1,52 @@
 package hlt;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.Writer;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Asynchronous logger. Records are pushed from the bot thread into a preallocated ring buffer as a format
+ * string plus raw arguments, and a background thread formats and writes them between turns. Arguments are
+ * substituted for "{}" placeholders in order. Only the bot thread may log and publish; the shutdown hook only
+ * wakes the writer to drain what has already been published and waits for it, so a record the bot thread is
+ * still filling is never read. Records below the threshold, INFO by default, are dropped before any work.
+ */
 public class Log {
-    private final FileWriter file;
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_ARGS = 6;
+
+    private static final Level[] levels = new Level[CAPACITY];
+    private static final String[] formats = new String[CAPACITY];
+    private static final int[] argCounts = new int[CAPACITY];
+    private static final long[] values = new long[CAPACITY * MAX_ARGS];
+    private static final Object[] objects = new Object[CAPACITY * MAX_ARGS];
+
+    /** Next slot the bot thread will write; records before it are published. */
+    private static volatile long head;
+    /** Next slot the writer thread will drain. */
+    private static volatile long tail;
+    /** Whether the slot at head is being filled with arguments and still needs publishing. */
+    private static boolean pending;
+    private static volatile long dropped;
+    private static long reported;
+
+    private static volatile Level threshold = Level.INFO;
+    /** Set by the shutdown hook; the writer stops after its next drain. */
+    private static volatile boolean closing;
+
+    private static final Record RECORD = new Record();
+    private static final Record DISABLED = new Record();
 
     private static Log INSTANCE;
-    private static ArrayList<String> LOG_BUFFER = new ArrayList<>();
+
+    private final Writer file;
+    private final Thread writer;
+    private final StringBuilder line = new StringBuilder(256);
 
     static {
         Runtime.getRuntime().addShutdownHook(new AtExit());
@@ -18,23 +56,52 @@ public class Log {
         @Override
         public void run() {
             if (INSTANCE != null) {
+                INSTANCE.close();
                 return;
             }
 
             final long now_in_nanos = System.nanoTime();
             final String filename = "bot-unknown-" + now_in_nanos + ".log";
-            try (final FileWriter writer = new FileWriter(filename)) {
-                for (final String message : LOG_BUFFER) {
-                    writer.append(message).append('\n');
-                }
+            try (final Writer writer = new BufferedWriter(new FileWriter(filename))) {
+                new Log(writer).drain();
             } catch (final IOException e) {
                 // Nothing much we can do here.
             }
         }
     }
 
-    private Log(final FileWriter f) {
+    /** Fills the arguments of the record that was just started. Disabled records ignore their arguments. */
+    public static final class Record {
+        public Record arg(final long value) {
+            if (this == RECORD) {
+                final int slot = (int) (head & MASK);
+                final int count = argCounts[slot];
+                if (count < MAX_ARGS) {
+                    values[slot * MAX_ARGS + count] = value;
+                    objects[slot * MAX_ARGS + count] = null;
+                    argCounts[slot] = count + 1;
+                }
+            }
+            return this;
+        }
+
+        public Record arg(final Object value) {
+            if (this == RECORD) {
+                final int slot = (int) (head & MASK);
+                final int count = argCounts[slot];
+                if (count < MAX_ARGS) {
+                    objects[slot * MAX_ARGS + count] = value == null ? "null" : value;
+                    argCounts[slot] = count + 1;
+                }
+            }
+            return this;
+        }
+    }
+
+    private Log(final Writer f) {
         file = f;
+        writer = new Thread(this::run, "log-writer");
+        writer.setDaemon(true);
     }
 
     static void open(final int botId) {
@@ -44,36 +111,146 @@ public class Log {
         }
 
         final String filename = "bot-" + botId + ".log";
-        final FileWriter writer;
+        final Writer writer;
         try {
-            writer = new FileWriter(filename);
+            writer = new BufferedWriter(new FileWriter(filename));
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         }
         INSTANCE = new Log(writer);
+        INSTANCE.writer.start();
+        flush();
+    }
 
-        try {
-            for (final String message : LOG_BUFFER) {
-                writer.append(message).append('\n');
+    public static void setLevel(final Level level) {
+        threshold = level;
+    }
+
+    public static Level level() {
+        return threshold;
+    }
+
+    public static boolean isEnabled(final Level level) {
+        return level.ordinal() >= threshold.ordinal();
+    }
+
+    public static Record debug(final String format) {
+        return record(Level.DEBUG, format);
+    }
+
+    public static Record info(final String format) {
+        return record(Level.INFO, format);
+    }
+
+    public static Record warn(final String format) {
+        return record(Level.WARN, format);
+    }
+
+    public static Record error(final String format) {
+        return record(Level.ERROR, format);
+    }
+
+    public static void log(final String message) {
+        record(Level.INFO, message);
+    }
+
+    /** Publishes everything logged so far and wakes the writer thread. Called once the turn has been sent. */
+    public static void flush() {
+        publish();
+        if (INSTANCE != null) {
+            LockSupport.unpark(INSTANCE.writer);
+        }
+    }
+
+    public static Record record(final Level level, final String format) {
+        if (!isEnabled(level)) {
+            return DISABLED;
+        }
+
+        publish();
+        if (head - tail >= CAPACITY) {
+            dropped = dropped + 1;
+            return DISABLED;
+        }
+
+        final int slot = (int) (head & MASK);
+        levels[slot] = level;
+        formats[slot] = format;
+        argCounts[slot] = 0;
+        pending = true;
+        return RECORD;
+    }
+
+    private static void publish() {
+        if (pending) {
+            pending = false;
+            ++head;
+        }
+    }
+
+    private void run() {
+        for (;;) {
+            LockSupport.park(this);
+            drain();
+            if (closing) {
+                return;
             }
-        } catch (final IOException e) {
-            throw new IllegalStateException(e);
         }
-        LOG_BUFFER.clear();
     }
 
-    public static void log(final String message) {
-		if (true) return;
-		
-        if (INSTANCE == null) {
-            LOG_BUFFER.add(message);
-            return;
+    // called from the shutdown hook: lets the writer drain the published records one last time and waits for it
+    private void close() {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(1000);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
+    private synchronized void drain() {
         try {
-            INSTANCE.file.append(message).append('\n').flush();
+            final long lost = dropped - reported;
+            if (lost > 0) {
+                reported += lost;
+                file.append("WARN log: dropped ").append(String.valueOf(lost)).append(" records\n");
+            }
+
+            final long end = head;
+            for (long i = tail; i < end; ++i) {
+                format((int) (i & MASK));
+                file.append(line);
+                tail = i + 1;
+            }
+            file.flush();
         } catch (final IOException e) {
             e.printStackTrace();
         }
     }
+
+    private void format(final int slot) {
+        final String format = formats[slot];
+        final int count = argCounts[slot];
+        final int base = slot * MAX_ARGS;
+
+        line.setLength(0);
+        line.append(levels[slot]).append(' ');
+
+        int arg = 0;
+        int start = 0;
+        for (int i; arg < count && (i = format.indexOf("{}", start)) >= 0; ++arg) {
+            line.append(format, start, i);
+            final Object object = objects[base + arg];
+            if (object != null) {
+                line.append(object);
+                objects[base + arg] = null;
+            } else {
+                line.append(values[base + arg]);
+            }
+            start = i + 2;
+        }
+        line.append(format, start, format.length()).append('\n');
+        formats[slot] = null;
+    }
 }
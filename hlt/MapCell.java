@@ -1,37 +1,56 @@
 package hlt;
 
+/** View of a single cell; the state itself lives in the flat arrays and bitset layers of GameMap. */
 public class MapCell {
     public final Position position;
-    public int halite;
-    public Ship ship;
-    public Entity structure;
-	
-	public boolean booked;
+    public final int index;
+    private final GameMap map;
 
-    public MapCell(final Position position, final int halite) {
+    MapCell(final GameMap map, final Position position, final int index) {
+        this.map = map;
         this.position = position;
-        this.halite = halite;
-		this.booked = false;
+        this.index = index;
+    }
+
+    public int halite() {
+        return map.halite[index];
+    }
+
+    public Ship ship() {
+        return map.shipAt(index);
+    }
+
+    public boolean isBooked() {
+        return map.isBooked(index);
     }
 
     public boolean isEmpty() {
-        return ship == null && structure == null;
+        return !map.isUnsafe(index) && !map.hasStructure(index);
     }
 
     public boolean isOccupied() {
-        return ship != null;
+        return map.isUnsafe(index);
     }
 
     public boolean hasStructure() {
-        return structure != null;
+        return map.hasStructure(index);
     }
 
     public void markUnsafe(final Ship ship) {
-        this.ship = ship;
+        map.markUnsafe(index, ship);
+    }
+
+    public void clearShip() {
+        map.clearUnsafe(index);
     }
 	
-	public void book(final Ship ship) {
-		Log.log("[BOOK] Ship "+ ship.id +": "+ position.x +","+ position.y);
-		this.booked = true;
+	/** Books the cell as the ship's target; false if another ship has booked it first. */
+	public boolean book(final Ship ship) {
+		if (!map.book(index, ship.id.id)) {
+			Log.debug("[BOOK] Ship {}: {},{} already taken").arg(ship.id.id).arg(position.x).arg(position.y);
+			return false;
+		}
+		Log.debug("[BOOK] Ship {}: {},{}").arg(ship.id.id).arg(position.x).arg(position.y);
+		return true;
 	}
 }
@@ -0,0 +1,150 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * Graph of the moves our ships want this turn, with at most one edge per ship: from the ship to the ship
+ * sitting on the cell it wants. A ship's move is safe to commit when it is the only ship wanting its target
+ * and the target is empty, or is held by a ship whose own move is safe. That covers chains ending on an empty
+ * cell as well as swaps and rotations of any length, which are closed cycles in the graph and commit together.
+ * Everything is resolved in O(ships); ships left uncommitted are contested and go to the MoveSolver.
+ */
+public class MoveGraph {
+    private static final byte UNVISITED = 0;
+    private static final byte VISITING = 1;
+    private static final byte COMMITTED = 2;
+    private static final byte CONTESTED = 3;
+
+    private final GameMap map;
+
+    /** Per map cell: how many ships want it and which slot sits on it, valid where the stamps match. */
+    private final int[] wantStamp;
+    private final int[] wantCount;
+    private final int[] occupantStamp;
+    private final int[] occupant;
+    private int generation;
+
+    private int shipCount;
+    private Ship[] ships = new Ship[64];
+    private Direction[] wanted = new Direction[64];
+    private int[] origin = new int[64];
+    private int[] target = new int[64];
+    private byte[] state = new byte[64];
+    private int[] stack = new int[64];
+
+    public MoveGraph(final GameMap map) {
+        this.map = map;
+        wantStamp = new int[map.size];
+        wantCount = new int[map.size];
+        occupantStamp = new int[map.size];
+        occupant = new int[map.size];
+    }
+
+    public void reset() {
+        shipCount = 0;
+        if (++generation == 0) {
+            Arrays.fill(wantStamp, 0);
+            Arrays.fill(occupantStamp, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Adds a ship with the move it wants. An illegal move, one the ship cannot pay for or onto an enemy, takes
+     * part in the graph as staying still, but is still reported by wanted().
+     */
+    public int add(final Ship ship, final Direction move, final boolean legal) {
+        if (shipCount == ships.length) {
+            final int capacity = shipCount * 2;
+            ships = Arrays.copyOf(ships, capacity);
+            wanted = Arrays.copyOf(wanted, capacity);
+            origin = Arrays.copyOf(origin, capacity);
+            target = Arrays.copyOf(target, capacity);
+            state = Arrays.copyOf(state, capacity);
+            stack = Arrays.copyOf(stack, capacity);
+        }
+
+        final int slot = shipCount++;
+        ships[slot] = ship;
+        wanted[slot] = move;
+        origin[slot] = map.index(ship.position);
+        target[slot] = map.neighbour(origin[slot], legal ? move : Direction.STILL);
+        state[slot] = UNVISITED;
+
+        occupantStamp[origin[slot]] = generation;
+        occupant[origin[slot]] = slot;
+
+        final int cell = target[slot];
+        if (wantStamp[cell] != generation) {
+            wantStamp[cell] = generation;
+            wantCount[cell] = 0;
+        }
+        ++wantCount[cell];
+        return slot;
+    }
+
+    /** Walks every ship's edge once and marks the moves that can be committed. */
+    public void resolve() {
+        for (int slot = 0; slot < shipCount; ++slot) {
+            if (state[slot] != UNVISITED) continue;
+
+            int depth = 0;
+            int current = slot;
+            byte result;
+            for (;;) {
+                if (wantCount[target[current]] > 1) {
+                    result = CONTESTED;
+                    state[current] = CONTESTED;
+                    break;
+                }
+
+                state[current] = VISITING;
+                stack[depth++] = current;
+
+                final int cell = target[current];
+                if (occupantStamp[cell] != generation) {
+                    // target is empty, the chain ends here
+                    result = COMMITTED;
+                    break;
+                }
+
+                final int next = occupant[cell];
+                if (state[next] == VISITING) {
+                    // closed a cycle; every ship on it is the sole claimant of the next one's cell
+                    result = COMMITTED;
+                    break;
+                }
+                if (state[next] != UNVISITED) {
+                    result = state[next];
+                    break;
+                }
+                current = next;
+            }
+
+            while (depth > 0) {
+                state[stack[--depth]] = result;
+            }
+        }
+    }
+
+    public int shipCount() {
+        return shipCount;
+    }
+
+    public Ship ship(final int slot) {
+        return ships[slot];
+    }
+
+    public Direction wanted(final int slot) {
+        return wanted[slot];
+    }
+
+    public boolean isCommitted(final int slot) {
+        return state[slot] == COMMITTED;
+    }
+
+    /** Committed move of the ship; staying still if its wanted move was illegal. */
+    public Direction direction(final int slot) {
+        return map.firstMove(origin[slot], target[slot]);
+    }
+}
@@ -0,0 +1,242 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * Collision-free move assignment for a whole fleet in one pass. Every ship lists its candidate moves with a
+ * cost, and the solver picks one move per ship so that no two ships end on the same cell while the total
+ * cost is minimal. It is a min-cost bipartite matching between ships and target cells, solved by successive
+ * shortest augmenting paths with Dijkstra and potentials over the sparse candidate graph. Staying still is
+ * always a candidate, so a complete assignment always exists; fixed ships from the MoveGraph keep that true
+ * because a committed move never takes the cell of a ship that might stay.
+ *
+ * Usage: reset(), then for each ship addShip() followed by its addMove() calls, then solve().
+ */
+public class MoveSolver {
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private final GameMap map;
+
+    private int shipCount;
+    private Ship[] ships = new Ship[64];
+    private int[] origin = new int[64];
+    private int[] edgeStart = new int[65];
+    private int[] match = new int[64];
+
+    private int edgeCount;
+    private int[] edgeCell = new int[256];
+    private int[] edgeCost = new int[256];
+
+    /** Local id of every map cell used this turn, valid where cellStamp matches generation. */
+    private final int[] localId;
+    private final int[] cellStamp;
+    private int generation;
+
+    private int cellCount;
+    private int[] cellIndex = new int[256];
+    private int[] cellOwner = new int[256];
+    private boolean[] unlimited = new boolean[256];
+
+    // Dijkstra state over ship nodes [0, shipCount) and cell nodes [shipCount, shipCount + cellCount)
+    private int[] potential = new int[512];
+    private int[] distance = new int[512];
+    private int[] parent = new int[512];
+    private IntHeap heap = new IntHeap(512);
+
+    public MoveSolver(final GameMap map) {
+        this.map = map;
+        localId = new int[map.size];
+        cellStamp = new int[map.size];
+    }
+
+    public void reset() {
+        shipCount = 0;
+        edgeCount = 0;
+        cellCount = 0;
+        edgeStart[0] = 0;
+        if (++generation == 0) {
+            Arrays.fill(cellStamp, 0);
+            generation = 1;
+        }
+    }
+
+    /** Adds a ship with staying still as its only move so far, and returns its slot. */
+    public int addShip(final Ship ship, final int stillCost) {
+        final int slot = addSlot(ship);
+        addMove(Direction.STILL, stillCost);
+        return slot;
+    }
+
+    /** Adds a ship whose move is already decided, such as one committed by the MoveGraph. */
+    public int addFixedShip(final Ship ship, final Direction direction) {
+        final int slot = addSlot(ship);
+        addMove(direction, 0);
+        return slot;
+    }
+
+    private int addSlot(final Ship ship) {
+        if (shipCount + 1 >= edgeStart.length) {
+            final int capacity = ships.length * 2;
+            ships = Arrays.copyOf(ships, capacity);
+            origin = Arrays.copyOf(origin, capacity);
+            match = Arrays.copyOf(match, capacity);
+            edgeStart = Arrays.copyOf(edgeStart, capacity + 1);
+        }
+
+        final int slot = shipCount++;
+        ships[slot] = ship;
+        origin[slot] = map.index(ship.position);
+        match[slot] = -1;
+        edgeStart[slot + 1] = edgeCount;
+        return slot;
+    }
+
+    /** Adds a candidate move for the ship added last. A repeated move keeps the lower cost. */
+    public void addMove(final Direction direction, final int cost) {
+        final int slot = shipCount - 1;
+        final int cell = local(map.neighbour(origin[slot], direction));
+
+        for (int e = edgeStart[slot]; e < edgeCount; ++e) {
+            if (edgeCell[e] == cell) {
+                edgeCost[e] = Math.min(edgeCost[e], cost);
+                return;
+            }
+        }
+
+        if (edgeCount == edgeCell.length) {
+            edgeCell = Arrays.copyOf(edgeCell, edgeCount * 2);
+            edgeCost = Arrays.copyOf(edgeCost, edgeCount * 2);
+        }
+        edgeCell[edgeCount] = cell;
+        edgeCost[edgeCount] = cost;
+        ++edgeCount;
+        edgeStart[slot + 1] = edgeCount;
+    }
+
+    /** Lets any number of ships end on the cell, such as our own structure at the end of the game. */
+    public void setUnlimited(final int cell) {
+        unlimited[local(cell)] = true;
+    }
+
+    public int shipCount() {
+        return shipCount;
+    }
+
+    public Ship ship(final int slot) {
+        return ships[slot];
+    }
+
+    /** Cell the ship ends on after solve(). */
+    public int target(final int slot) {
+        return cellIndex[match[slot]];
+    }
+
+    /** Move assigned to the ship by solve(). */
+    public Direction direction(final int slot) {
+        return map.firstMove(origin[slot], target(slot));
+    }
+
+    public void solve() {
+        final int nodes = shipCount + cellCount;
+        if (potential.length < nodes) {
+            final int capacity = Math.max(nodes, potential.length * 2);
+            potential = new int[capacity];
+            distance = new int[capacity];
+            parent = new int[capacity];
+            heap = new IntHeap(capacity);
+        }
+        Arrays.fill(potential, 0, nodes, 0);
+        Arrays.fill(cellOwner, 0, cellCount, -1);
+
+        for (int slot = 0; slot < shipCount; ++slot) {
+            augment(slot, nodes);
+        }
+    }
+
+    // shortest augmenting path from an unmatched ship to a free cell, then flip it along the path
+    private void augment(final int source, final int nodes) {
+        Arrays.fill(distance, 0, nodes, INFINITY);
+        heap.clear();
+        distance[source] = 0;
+        parent[source] = -1;
+        heap.push(source, 0);
+
+        int terminal = -1;
+        while (!heap.isEmpty()) {
+            final int node = heap.pop();
+            if (node >= shipCount) {
+                final int cell = node - shipCount;
+                if (unlimited[cell] || cellOwner[cell] < 0) {
+                    terminal = node;
+                    break;
+                }
+
+                // the cell is taken, continue through the ship holding it; matched edges have reduced cost 0
+                final int holder = cellOwner[cell];
+                final int d = distance[node] + potential[node] - potential[holder] - costOf(holder, cell);
+                if (d < distance[holder]) {
+                    distance[holder] = d;
+                    parent[holder] = node;
+                    heap.push(holder, d);
+                }
+                continue;
+            }
+
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; ++e) {
+                final int cellNode = shipCount + edgeCell[e];
+                if (match[node] == edgeCell[e]) continue;
+
+                final int d = distance[node] + edgeCost[e] + potential[node] - potential[cellNode];
+                if (d < distance[cellNode]) {
+                    distance[cellNode] = d;
+                    parent[cellNode] = node;
+                    heap.push(cellNode, d);
+                }
+            }
+        }
+
+        final int limit = distance[terminal];
+        for (int node = 0; node < nodes; ++node) {
+            potential[node] += Math.min(distance[node], limit);
+        }
+
+        for (int node = terminal; node >= 0; ) {
+            final int ship = parent[node];
+            final int cell = node - shipCount;
+            final int previous = match[ship];
+            match[ship] = cell;
+            if (!unlimited[cell]) {
+                cellOwner[cell] = ship;
+            }
+            if (ship == source) break;
+            node = shipCount + previous;
+        }
+    }
+
+    private int costOf(final int slot, final int cell) {
+        for (int e = edgeStart[slot]; e < edgeStart[slot + 1]; ++e) {
+            if (edgeCell[e] == cell) {
+                return edgeCost[e];
+            }
+        }
+        throw new IllegalStateException("Ship " + ships[slot].id + " has no move to its matched cell");
+    }
+
+    private int local(final int cell) {
+        if (cellStamp[cell] == generation) {
+            return localId[cell];
+        }
+
+        if (cellCount == cellIndex.length) {
+            final int capacity = cellCount * 2;
+            cellIndex = Arrays.copyOf(cellIndex, capacity);
+            cellOwner = Arrays.copyOf(cellOwner, capacity);
+            unlimited = Arrays.copyOf(unlimited, capacity);
+        }
+        cellStamp[cell] = generation;
+        localId[cell] = cellCount;
+        cellIndex[cellCount] = cell;
+        unlimited[cellCount] = false;
+        return cellCount++;
+    }
+}
@@ -0,0 +1,330 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MoveSolver front end that splits a large fleet by map tiles. Every ship belongs to the tile holding its
+ * cell, and each group of tiles is solved on its own MoveSolver, in parallel on the ForkJoinPool. The groups
+ * are then reconciled: two groups that sent ships to the same cell are merged and solved again, until no cell
+ * is taken twice. Solving the groups apart only drops the constraints between them, so once their solutions
+ * agree the total cost is the same as solving the whole fleet at once; the work, though, grows with the largest
+ * cluster of interacting ships instead of the whole fleet. Each reconcile round only rechecks the ships just
+ * solved again. Only this assignment is split: the moves the ships ask for are still routed over the whole fleet.
+ *
+ * Same usage as MoveSolver: reset(), then addShip() or addFixedShip() and addMove() per ship, then solve().
+ */
+public class PartitionedSolver {
+    public static final int TILE_SIZE = 16;
+    /** Fleets smaller than this are solved in one piece, which measured faster than splitting them. */
+    public static final int MIN_SHIPS_TO_PARTITION = 64;
+
+    private final GameMap map;
+    private final int tilesX;
+    private final int tileCount;
+
+    /** Solver of each group of tiles, kept at the group's root tile. */
+    private final MoveSolver[] solvers;
+    /** Union-find over tiles; tiles in one group share a root. */
+    private final int[] parent;
+    private final boolean[] dirty;
+    /** Ships of each root tile, as a linked list over slots through nextInGroup. */
+    private final int[] groupHead;
+    private final int[] groupTail;
+    /** Ships of each dirty root tile, as a range of order. */
+    private final int[] groupStart;
+    private final int[] groupEnd;
+    private final int[] dirtyRoots;
+    private int orderCount;
+
+    private int shipCount;
+    private Ship[] ships = new Ship[64];
+    private int[] origin = new int[64];
+    private int[] tile = new int[64];
+    private boolean[] fixed = new boolean[64];
+    private int[] moveStart = new int[65];
+    private int[] order = new int[64];
+    private int[] nextInGroup = new int[64];
+    private int[] target = new int[64];
+    private Direction[] direction = new Direction[64];
+
+    private int moveCount;
+    private Direction[] moveDirection = new Direction[256];
+    private int[] moveCost = new int[256];
+
+    /**
+     * Cells any number of ships may end on, and the ship that took each cell, valid where the stamps match
+     * and that ship still ends there.
+     */
+    private final int[] unlimitedStamp;
+    private final int[] claimStamp;
+    private final int[] claimSlot;
+    private int generation;
+    private int claimGeneration;
+
+    public PartitionedSolver(final GameMap map) {
+        this.map = map;
+        tilesX = (map.width + TILE_SIZE - 1) / TILE_SIZE;
+        tileCount = tilesX * ((map.height + TILE_SIZE - 1) / TILE_SIZE);
+
+        solvers = new MoveSolver[tileCount];
+        parent = new int[tileCount];
+        dirty = new boolean[tileCount];
+        groupHead = new int[tileCount];
+        groupTail = new int[tileCount];
+        groupStart = new int[tileCount];
+        groupEnd = new int[tileCount];
+        dirtyRoots = new int[tileCount];
+
+        unlimitedStamp = new int[map.size];
+        claimStamp = new int[map.size];
+        claimSlot = new int[map.size];
+    }
+
+    public void reset() {
+        shipCount = 0;
+        moveCount = 0;
+        moveStart[0] = 0;
+        if (++generation == 0) {
+            Arrays.fill(unlimitedStamp, 0);
+            generation = 1;
+        }
+    }
+
+    /** Adds a ship with staying still as its only move so far, and returns its slot. */
+    public int addShip(final Ship ship, final int stillCost) {
+        final int slot = addSlot(ship, false);
+        addMove(Direction.STILL, stillCost);
+        return slot;
+    }
+
+    /** Adds a ship whose move is already decided, such as one committed by the MoveGraph. */
+    public int addFixedShip(final Ship ship, final Direction move) {
+        final int slot = addSlot(ship, true);
+        addMove(move, 0);
+        return slot;
+    }
+
+    private int addSlot(final Ship ship, final boolean isFixed) {
+        if (shipCount == ships.length) {
+            final int capacity = shipCount * 2;
+            ships = Arrays.copyOf(ships, capacity);
+            origin = Arrays.copyOf(origin, capacity);
+            tile = Arrays.copyOf(tile, capacity);
+            fixed = Arrays.copyOf(fixed, capacity);
+            moveStart = Arrays.copyOf(moveStart, capacity + 1);
+            order = Arrays.copyOf(order, capacity);
+            nextInGroup = Arrays.copyOf(nextInGroup, capacity);
+            target = Arrays.copyOf(target, capacity);
+            direction = Arrays.copyOf(direction, capacity);
+        }
+
+        final int slot = shipCount++;
+        ships[slot] = ship;
+        origin[slot] = map.index(ship.position);
+        tile[slot] = (ship.position.y / TILE_SIZE) * tilesX + ship.position.x / TILE_SIZE;
+        fixed[slot] = isFixed;
+        moveStart[slot + 1] = moveCount;
+        return slot;
+    }
+
+    /** Adds a candidate move for the ship added last. */
+    public void addMove(final Direction move, final int cost) {
+        if (moveCount == moveCost.length) {
+            moveDirection = Arrays.copyOf(moveDirection, moveCount * 2);
+            moveCost = Arrays.copyOf(moveCost, moveCount * 2);
+        }
+        moveDirection[moveCount] = move;
+        moveCost[moveCount] = cost;
+        ++moveCount;
+        moveStart[shipCount] = moveCount;
+    }
+
+    /** Lets any number of ships end on the cell, such as our own structure at the end of the game. */
+    public void setUnlimited(final int cell) {
+        unlimitedStamp[cell] = generation;
+    }
+
+    public int shipCount() {
+        return shipCount;
+    }
+
+    public Ship ship(final int slot) {
+        return ships[slot];
+    }
+
+    /** Cell the ship ends on after solve(). */
+    public int target(final int slot) {
+        return target[slot];
+    }
+
+    /** Move assigned to the ship by solve(). */
+    public Direction direction(final int slot) {
+        return direction[slot];
+    }
+
+    public void solve() {
+        final boolean partition = shipCount >= MIN_SHIPS_TO_PARTITION;
+        for (int t = 0; t < tileCount; ++t) {
+            parent[t] = partition ? t : 0;
+            dirty[t] = true;
+            groupHead[t] = -1;
+        }
+        for (int slot = 0; slot < shipCount; ++slot) {
+            final int root = partition ? tile[slot] : 0;
+            nextInGroup[slot] = -1;
+            if (groupHead[root] < 0) {
+                groupHead[root] = slot;
+            } else {
+                nextInGroup[groupTail[root]] = slot;
+            }
+            groupTail[root] = slot;
+        }
+
+        ++claimGeneration;
+        for (int round = 0; ; ++round) {
+            solveDirtyGroups();
+
+            // reconcile the ships just solved, the rest kept their cells: a cell taken by two groups merges them
+            boolean merged = false;
+            for (int i = 0; i < orderCount; ++i) {
+                final int slot = order[i];
+                final int cell = target[slot];
+                if (unlimitedStamp[cell] == generation) continue;
+
+                final int holder = claimSlot[cell];
+                if (claimStamp[cell] != claimGeneration || holder == slot || target[holder] != cell) {
+                    claimStamp[cell] = claimGeneration;
+                    claimSlot[cell] = slot;
+                    continue;
+                }
+
+                final int root = find(tile[slot]);
+                final int other = find(tile[holder]);
+                if (other != root) {
+                    join(root, other);
+                    merged = true;
+                }
+            }
+
+            if (!merged) {
+                if (round > 0) {
+                    Log.debug("[SOLVE] Reconciled tile groups in {} rounds").arg(round + 1);
+                }
+                return;
+            }
+        }
+    }
+
+    // merges two groups under the lower root, appending the ships of the other
+    private void join(final int a, final int b) {
+        final int joined = Math.min(a, b);
+        final int other = Math.max(a, b);
+        parent[other] = joined;
+        dirty[joined] = true;
+        if (groupHead[other] < 0) {
+            return;
+        }
+        if (groupHead[joined] < 0) {
+            groupHead[joined] = groupHead[other];
+        } else {
+            nextInGroup[groupTail[joined]] = groupHead[other];
+        }
+        groupTail[joined] = groupTail[other];
+        groupHead[other] = -1;
+    }
+
+    private void solveDirtyGroups() {
+        // lay out the ships of each dirty group as one range of order
+        orderCount = 0;
+        int dirtyCount = 0;
+        for (int t = 0; t < tileCount; ++t) {
+            if (parent[t] == t && dirty[t] && groupHead[t] >= 0) {
+                dirtyRoots[dirtyCount++] = t;
+                groupStart[t] = orderCount;
+                for (int slot = groupHead[t]; slot >= 0; slot = nextInGroup[slot]) {
+                    order[orderCount++] = slot;
+                }
+                groupEnd[t] = orderCount;
+                // merging appends whole groups, so restore slot order for the solver to break ties as before
+                Arrays.sort(order, groupStart[t], orderCount);
+            }
+            dirty[t] = false;
+        }
+
+        if (dirtyCount < 2 || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            for (int i = 0; i < dirtyCount; ++i) {
+                solveGroup(dirtyRoots[i]);
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new SolveGroups(0, dirtyCount));
+        }
+    }
+
+    private final class SolveGroups extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        SolveGroups(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                solveGroup(dirtyRoots[from]);
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new SolveGroups(from, middle), new SolveGroups(middle, to));
+        }
+    }
+
+    // replays the group's ships into its own MoveSolver; each group writes only its own slots
+    private void solveGroup(final int root) {
+        if (solvers[root] == null) {
+            solvers[root] = new MoveSolver(map);
+        }
+        final MoveSolver solver = solvers[root];
+        solver.reset();
+
+        for (int i = groupStart[root]; i < groupEnd[root]; ++i) {
+            final int slot = order[i];
+            final int first = moveStart[slot];
+            if (fixed[slot]) {
+                solver.addFixedShip(ships[slot], moveDirection[first]);
+            } else {
+                solver.addShip(ships[slot], moveCost[first]);
+            }
+            for (int m = first; m < moveStart[slot + 1]; ++m) {
+                if (m > first) {
+                    solver.addMove(moveDirection[m], moveCost[m]);
+                }
+                final int cell = map.neighbour(origin[slot], moveDirection[m]);
+                if (unlimitedStamp[cell] == generation) {
+                    solver.setUnlimited(cell);
+                }
+            }
+        }
+        solver.solve();
+
+        for (int i = groupStart[root]; i < groupEnd[root]; ++i) {
+            final int local = i - groupStart[root];
+            target[order[i]] = solver.target(local);
+            direction[order[i]] = solver.direction(local);
+        }
+    }
+
+    private int find(int t) {
+        while (parent[t] != t) {
+            parent[t] = parent[parent[t]];
+            t = parent[t];
+        }
+        return t;
+    }
+}
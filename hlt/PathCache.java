@@ -0,0 +1,120 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * Routes planned by PathFinder, kept per ship id across turns. A route stays valid while the ship follows it,
+ * no cell still ahead of the ship has changed halite since it was planned or been reserved by another ship for
+ * the turn the ship would pass it, and the next cell has not been taken by an enemy ship.
+ */
+public class PathCache {
+    private int[][] paths = new int[64][];
+    private int[] length = new int[64];
+    private int[] cursor = new int[64];
+    private int[] target = new int[64];
+    private int[] frame = new int[64];
+
+    /**
+     * Advances the ship's cached route to its current cell and checks that the route still holds.
+     * Returns false, dropping the route, when it has to be planned again.
+     */
+    public boolean follow(final int shipId, final PlayerId owner, final int cell, final int target, final GameMap map) {
+        if (shipId >= length.length || length[shipId] == 0) {
+            return false;
+        }
+
+        final int[] path = paths[shipId];
+        int at = cursor[shipId];
+        if (path[at] != cell && at + 1 < length[shipId] && path[at + 1] == cell) {
+            ++at;
+        }
+
+        if (this.target[shipId] != target || path[at] != cell || at + 1 >= length[shipId]) {
+            invalidate(shipId);
+            return false;
+        }
+
+        for (int i = at; i < length[shipId]; ++i) {
+            if (map.lastChanged[path[i]] > frame[shipId] || map.reservations.isReserved(path[i], i - at, shipId)) {
+                invalidate(shipId);
+                return false;
+            }
+        }
+
+        final int next = path[at + 1];
+        if (map.isUnsafe(next) && map.shipOwner[next] != owner.id) {
+            invalidate(shipId);
+            return false;
+        }
+
+        cursor[shipId] = at;
+        return true;
+    }
+
+    public void store(final int shipId, final int target, final int[] route, final int routeLength, final int frame) {
+        ensureCapacity(shipId);
+        if (paths[shipId] == null || paths[shipId].length < routeLength) {
+            paths[shipId] = new int[Math.max(routeLength, 16)];
+        }
+
+        System.arraycopy(route, 0, paths[shipId], 0, routeLength);
+        length[shipId] = routeLength;
+        cursor[shipId] = 0;
+        this.target[shipId] = target;
+        this.frame[shipId] = frame;
+    }
+
+    /** Reserves the cells ahead of the ship on its route for the turns it will reach them. */
+    public void reserve(final int shipId, final ReservationTable reservations) {
+        if (shipId >= length.length) {
+            return;
+        }
+
+        final int at = cursor[shipId];
+        for (int k = 1; k < ReservationTable.HORIZON && at + k < length[shipId]; ++k) {
+            reservations.reserve(paths[shipId][at + k], k, shipId);
+        }
+    }
+
+    /** Whether the ship has a route and the cell is where the route has it now or one step on. */
+    public boolean isOnRoute(final int shipId, final int cell) {
+        if (shipId >= length.length || length[shipId] == 0) {
+            return false;
+        }
+        final int at = cursor[shipId];
+        return paths[shipId][at] == cell || at + 1 < length[shipId] && paths[shipId][at + 1] == cell;
+    }
+
+    /** Cell after the ship's current position on its route, or -1 without a route. */
+    public int next(final int shipId) {
+        if (shipId >= length.length || cursor[shipId] + 1 >= length[shipId]) {
+            return -1;
+        }
+        return paths[shipId][cursor[shipId] + 1];
+    }
+
+    public void invalidate(final int shipId) {
+        if (shipId < length.length) {
+            length[shipId] = 0;
+            cursor[shipId] = 0;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(length, 0);
+        Arrays.fill(cursor, 0);
+    }
+
+    private void ensureCapacity(final int shipId) {
+        if (shipId < length.length) {
+            return;
+        }
+
+        final int capacity = Math.max(length.length * 2, shipId + 1);
+        paths = Arrays.copyOf(paths, capacity);
+        length = Arrays.copyOf(length, capacity);
+        cursor = Arrays.copyOf(cursor, capacity);
+        target = Arrays.copyOf(target, capacity);
+        frame = Arrays.copyOf(frame, capacity);
+    }
+}
@@ -0,0 +1,116 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * A* over the cell graph where every move costs turnCost plus the halite burned leaving the cell, so routes
+ * trade travel time against cargo lost to move costs. The Manhattan distance times turnCost never overestimates
+ * and keeps the search focused on the target. Cells another ship has reserved for the turn this route would
+ * reach them cost RESERVED_PENALTY turns extra, so routes bend around each other's convoys. Scratch arrays are
+ * reused between searches, so each thread needs its own PathFinder.
+ */
+public class PathFinder {
+    /** Extra turns charged for entering a cell another ship has reserved for that turn. */
+    public static final int RESERVED_PENALTY = 2;
+
+    private final GameMap map;
+    private final int[] cost;
+    private final int[] parent;
+    private final int[] steps;
+    private final int[] seen;
+    private final int[] closed;
+    private final IntHeap open;
+    private int generation;
+
+    public PathFinder(final GameMap map) {
+        this.map = map;
+        cost = new int[map.size];
+        parent = new int[map.size];
+        steps = new int[map.size];
+        seen = new int[map.size];
+        closed = new int[map.size];
+        open = new IntHeap(map.size);
+    }
+
+    /**
+     * Finds the cheapest route from source to target for the ship, avoiding first moves onto enemy ships.
+     * Writes the route into path, source first and target last, and returns its length, or 0 when the target
+     * cannot be reached.
+     */
+    public int find(final int source, final int target, final int shipId, final PlayerId owner, final int turnCost,
+                    final int[] path) {
+        return search(source, target, shipId, owner, turnCost) ? reconstruct(target, path) : 0;
+    }
+
+    /**
+     * Prices the cheapest route from source to every cell, as find would, without a target to aim for. Read the
+     * results back with cost until the next search.
+     */
+    public void expand(final int source, final int shipId, final PlayerId owner, final int turnCost) {
+        search(source, -1, shipId, owner, turnCost);
+    }
+
+    /** Cost of the cheapest route to the cell found by the last expand, or -1 if it was not reached. */
+    public int cost(final int cell) {
+        return closed[cell] == generation ? cost[cell] : -1;
+    }
+
+    // A* towards the target, or Dijkstra over the whole map when there is none; true once the target is popped
+    private boolean search(final int source, final int target, final int shipId, final PlayerId owner,
+                           final int turnCost) {
+        if (++generation == 0) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            generation = 1;
+        }
+
+        open.clear();
+        seen[source] = generation;
+        cost[source] = 0;
+        parent[source] = -1;
+        steps[source] = 0;
+        open.push(source, target < 0 ? 0 : map.manhattanDistance(source, target) * turnCost);
+
+        while (!open.isEmpty()) {
+            final int cell = open.pop();
+            if (cell == target) {
+                return true;
+            }
+            closed[cell] = generation;
+
+            final int moveCost = turnCost + map.halite[cell] / Constants.MOVE_COST_RATIO;
+            for (int d = 0; d < 4; ++d) {
+                final int next = map.neighbour(cell, Direction.ALL[d]);
+                if (closed[next] == generation) continue;
+                if (cell == source && map.isUnsafe(next) && map.shipOwner[next] != owner.id) continue;
+
+                int candidate = cost[cell] + moveCost;
+                if (map.reservations.isReserved(next, steps[cell] + 1, shipId)) {
+                    candidate += RESERVED_PENALTY * turnCost;
+                }
+                if (seen[next] == generation && candidate >= cost[next]) continue;
+
+                seen[next] = generation;
+                cost[next] = candidate;
+                parent[next] = cell;
+                steps[next] = steps[cell] + 1;
+                open.push(next, candidate + (target < 0 ? 0 : map.manhattanDistance(next, target) * turnCost));
+            }
+        }
+
+        return false;
+    }
+
+    private int reconstruct(final int target, final int[] path) {
+        int length = 0;
+        for (int cell = target; cell >= 0; cell = parent[cell]) {
+            ++length;
+        }
+
+        int i = length;
+        for (int cell = target; cell >= 0; cell = parent[cell]) {
+            path[--i] = cell;
+        }
+        return length;
+    }
+}
@@ -9,34 +9,39 @@ public class Player {
     public int halite;
     public final Map<EntityId, Ship> ships = new LinkedHashMap<>();
     public final Map<EntityId, Dropoff> dropoffs = new LinkedHashMap<>();
+    /** Distances to this player's shipyard and dropoffs, refreshed every frame. */
+    public DistanceField distances;
 
     private Player(final PlayerId id, final Shipyard shipyard) {
         this.id = id;
         this.shipyard = shipyard;
     }
 
-    void _update(final int numShips, final int numDropoffs, final int halite) {
+    void _update(final int numShips, final int numDropoffs, final int halite, final GameMap gameMap,
+                 final ShipRegistry registry) {
         this.halite = halite;
 
-        ships.clear();
         for (int i = 0; i < numShips; ++i) {
-            final Ship ship = Ship._generate(id);
-            ships.put(ship.id, ship);
+            final Ship ship = registry.read(id);
+            if (!ships.containsKey(ship.id)) {
+                ships.put(ship.id, ship);
+            }
+        }
+        if (ships.size() > numShips) {
+            ships.values().removeIf(ship -> !registry.isAlive(ship.id.id));
         }
 
-        dropoffs.clear();
+        // dropoffs never move or go away, only new ones need creating
         for (int i = 0; i < numDropoffs; ++i) {
-            final Dropoff dropoff = Dropoff._generate(id);
-            dropoffs.put(dropoff.id, dropoff);
+            final Dropoff dropoff = Dropoff._generate(id, gameMap);
+            dropoffs.putIfAbsent(dropoff.id, dropoff);
         }
     }
 
     static Player _generate() {
-        final Input input = Input.readInput();
-
-        final PlayerId playerId = new PlayerId(input.getInt());
-        final int shipyard_x = input.getInt();
-        final int shipyard_y = input.getInt();
+        final PlayerId playerId = new PlayerId(Input.readInt());
+        final int shipyard_x = Input.readInt();
+        final int shipyard_y = Input.readInt();
 
         return new Player(playerId, new Shipyard(playerId, new Position(shipyard_x, shipyard_y)));
     }
@@ -0,0 +1,120 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Cells our ships plan to occupy over the next HORIZON turns, keyed by (cell, turn). Stored as one flat atomic
+ * int array with a slice per turn used as a ring: rolling to a new turn clears only the slices that fell into the
+ * past, which then serve the turns entering the horizon. Each entry holds the reserving ship id plus one.
+ *
+ * An entry is taken by compare-and-set, so ships planned on different threads never both get the same cell and
+ * turn. Each ship's list of held entries is only touched by the thread planning that ship; rolling and clearing
+ * run while nobody is planning.
+ */
+public class ReservationTable {
+    public static final int HORIZON = 8;
+
+    private final int size;
+    private final AtomicIntegerArray owner;
+    private int turn;
+
+    /** Entries held by each ship id, the count first, so a ship's reservations can be released without a scan. */
+    private volatile int[][] held = new int[64][];
+
+    public ReservationTable(final int size) {
+        this.size = size;
+        owner = new AtomicIntegerArray(HORIZON * size);
+    }
+
+    /** Moves the table forward to the given turn, freeing the slices of the turns that have passed. */
+    public void roll(final int newTurn) {
+        for (int t = turn; t < newTurn && t < turn + HORIZON; ++t) {
+            final int slice = (t % HORIZON) * size;
+            for (int entry = slice; entry < slice + size; ++entry) {
+                owner.lazySet(entry, 0);
+            }
+        }
+        turn = newTurn;
+    }
+
+    /** Reserves the cell for the ship the given number of turns from now. Fails if another ship holds it. */
+    public boolean reserve(final int cell, final int offset, final int shipId) {
+        if (offset <= 0 || offset >= HORIZON) {
+            return false;
+        }
+
+        final int entry = entry(cell, offset);
+        if (!owner.compareAndSet(entry, 0, shipId + 1)) {
+            return owner.get(entry) == shipId + 1;
+        }
+
+        final int[] mine = heldBy(shipId);
+        if (mine[0] < HORIZON) {
+            mine[++mine[0]] = entry;
+        }
+        return true;
+    }
+
+    /** Whether a ship other than the given one holds the cell the given number of turns from now. */
+    public boolean isReserved(final int cell, final int offset, final int shipId) {
+        if (offset <= 0 || offset >= HORIZON) {
+            return false;
+        }
+
+        final int holder = owner.get(entry(cell, offset));
+        return holder != 0 && holder != shipId + 1;
+    }
+
+    /** Frees everything the ship has reserved. */
+    public void release(final int shipId) {
+        final int[][] lists = held;
+        if (shipId >= lists.length || lists[shipId] == null) {
+            return;
+        }
+
+        final int[] mine = lists[shipId];
+        for (int i = 1; i <= mine[0]; ++i) {
+            owner.compareAndSet(mine[i], shipId + 1, 0);
+        }
+        mine[0] = 0;
+    }
+
+    /** Frees every reservation and starts over at turn 0. */
+    public void clear() {
+        for (int entry = 0; entry < owner.length(); ++entry) {
+            owner.set(entry, 0);
+        }
+        for (final int[] mine : held) {
+            if (mine != null) {
+                mine[0] = 0;
+            }
+        }
+        turn = 0;
+    }
+
+    private int entry(final int cell, final int offset) {
+        return ((turn + offset) % HORIZON) * size + cell;
+    }
+
+    private int[] heldBy(final int shipId) {
+        final int[][] lists = held;
+        if (shipId < lists.length && lists[shipId] != null) {
+            return lists[shipId];
+        }
+        return addHeld(shipId);
+    }
+
+    // the first reservation of a ship id may grow the lists, which must not race with another ship's first one
+    private synchronized int[] addHeld(final int shipId) {
+        int[][] lists = held;
+        if (shipId >= lists.length) {
+            lists = Arrays.copyOf(lists, Math.max(lists.length * 2, shipId + 1));
+        }
+        if (lists[shipId] == null) {
+            lists[shipId] = new int[HORIZON + 1];
+        }
+        held = lists;
+        return lists[shipId];
+    }
+}
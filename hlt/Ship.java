@@ -1,8 +1,7 @@
 package hlt;
 
 public class Ship extends Entity {
-    public final int halite;
-    public boolean planned = false;
+    public int halite;
 
     public Ship(final PlayerId owner, final EntityId id, final Position position, final int halite) {
         super(owner, id, position);
@@ -25,32 +24,8 @@ public class Ship extends Entity {
         return Command.move(id, Direction.STILL);
     }
 
-    static Ship _generate(final PlayerId playerId) {
-        final Input input = Input.readInput();
-
-        final EntityId shipId = new EntityId(input.getInt());
-        final int x = input.getInt();
-        final int y = input.getInt();
-        final int halite = input.getInt();
-
-        return new Ship(playerId, shipId, new Position(x, y), halite);
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-
-        Ship ship = (Ship) o;
-
-        return halite == ship.halite;
-    }
-
-    @Override
-    public int hashCode() {
-        int result = super.hashCode();
-        result = 31 * result + halite;
-        return result;
+    void _update(final Position position, final int halite) {
+        this.position = position;
+        this.halite = halite;
     }
 }
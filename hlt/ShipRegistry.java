@@ -0,0 +1,138 @@
+package hlt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Every ship in the game, kept across turns and indexed by ship id. Ship ids are handed out by the engine from
+ * a single counter, so they stay dense and plain arrays serve as the index. Ship objects are updated in place
+ * each frame, and once the whole frame is read the registry reports which ships were spawned, moved or
+ * destroyed since the last one.
+ */
+public class ShipRegistry {
+    /** Receives the ship events of a frame. Only override the events you need. */
+    public interface Listener {
+        default void spawned(final Ship ship) {
+        }
+
+        /** The ship is on a different cell than in the last frame; from is the cell it left. */
+        default void moved(final Ship ship, final int from) {
+        }
+
+        default void destroyed(final Ship ship) {
+        }
+    }
+
+    private final GameMap map;
+    private final ArrayList<Listener> listeners = new ArrayList<>();
+
+    private Ship[] ships = new Ship[256];
+    /** Cell of each ship in the frame being read, and in the frame before it. */
+    private int[] cell = new int[256];
+    private int[] previousCell = new int[256];
+    private int[] seen = new int[256];
+    private int[] born = new int[256];
+
+    /** Ids of the ships alive at the end of the last frame, in order of first sighting. */
+    private int[] alive = new int[256];
+    private int aliveCount;
+    private int frame;
+
+    public ShipRegistry(final GameMap map) {
+        this.map = map;
+    }
+
+    public void addListener(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    void beginFrame() {
+        ++frame;
+    }
+
+    /** Reads one ship line of the frame, updating the ship in place or creating it if it is new. */
+    Ship read(final PlayerId owner) {
+        final int id = Input.readInt();
+        final int x = Input.readInt();
+        final int y = Input.readInt();
+        final int shipHalite = Input.readInt();
+        final Position position = map.position(x, y);
+        final int index = map.index(position);
+
+        ensureCapacity(id);
+        Ship ship = ships[id];
+        if (ship == null) {
+            ship = new Ship(owner, new EntityId(id), position, shipHalite);
+            ships[id] = ship;
+            previousCell[id] = index;
+            born[id] = frame;
+            if (aliveCount == alive.length) {
+                alive = Arrays.copyOf(alive, aliveCount * 2);
+            }
+            alive[aliveCount++] = id;
+        } else {
+            previousCell[id] = cell[id];
+            ship._update(position, shipHalite);
+        }
+
+        cell[id] = index;
+        seen[id] = frame;
+        return ship;
+    }
+
+    /** Drops the ships missing from this frame and notifies the listeners of everything that changed. */
+    void endFrame() {
+        int kept = 0;
+        for (int i = 0; i < aliveCount; ++i) {
+            final int id = alive[i];
+            final Ship ship = ships[id];
+
+            if (seen[id] != frame) {
+                ships[id] = null;
+                for (final Listener listener : listeners) {
+                    listener.destroyed(ship);
+                }
+                continue;
+            }
+
+            alive[kept++] = id;
+            if (born[id] == frame) {
+                for (final Listener listener : listeners) {
+                    listener.spawned(ship);
+                }
+            } else if (previousCell[id] != cell[id]) {
+                for (final Listener listener : listeners) {
+                    listener.moved(ship, previousCell[id]);
+                }
+            }
+        }
+        aliveCount = kept;
+    }
+
+    /** The live ship with this id, or null. */
+    public Ship ship(final int id) {
+        return id < ships.length ? ships[id] : null;
+    }
+
+    public boolean isAlive(final int id) {
+        return id < ships.length && ships[id] != null && seen[id] == frame;
+    }
+
+    /** Length of the per-ship arrays; every ship id seen so far is below it. */
+    public int capacity() {
+        return ships.length;
+    }
+
+    private void ensureCapacity(final int id) {
+        if (id < ships.length) {
+            return;
+        }
+
+        final int capacity = Math.max(ships.length * 2, id + 1);
+        ships = Arrays.copyOf(ships, capacity);
+        cell = Arrays.copyOf(cell, capacity);
+        previousCell = Arrays.copyOf(previousCell, capacity);
+        seen = Arrays.copyOf(seen, capacity);
+        born = Arrays.copyOf(born, capacity);
+    }
+}
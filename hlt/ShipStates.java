@@ -0,0 +1,92 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * The bot's own per-ship state, in primitive arrays indexed by ship id: each ship's role, its mining target and
+ * the move it queued this turn. Lookups are a plain array read. Registered as a ShipRegistry listener, it resets
+ * a ship's entry when the ship spawns and clears it when the ship is destroyed. A ship that changes role stops
+ * following its route, so its reservations are released.
+ */
+public class ShipStates implements ShipRegistry.Listener {
+    public static final byte EXPLORE = 0;
+    public static final byte RETURN = 1;
+
+    private static final byte NO_MOVE = -1;
+
+    private final ReservationTable reservations;
+
+    private byte[] role = new byte[256];
+    private int[] target = new int[256];
+    private byte[] queued = new byte[256];
+
+    public ShipStates(final ReservationTable reservations) {
+        this.reservations = reservations;
+        Arrays.fill(target, -1);
+        Arrays.fill(queued, NO_MOVE);
+    }
+
+    public byte role(final int shipId) {
+        return shipId < role.length ? role[shipId] : EXPLORE;
+    }
+
+    public void setRole(final int shipId, final byte newRole) {
+        ensureCapacity(shipId);
+        if (role[shipId] != newRole) {
+            reservations.release(shipId);
+        }
+        role[shipId] = newRole;
+    }
+
+    /** Cell the ship is heading to, or -1. */
+    public int target(final int shipId) {
+        return shipId < target.length ? target[shipId] : -1;
+    }
+
+    public void setTarget(final int shipId, final int cell) {
+        ensureCapacity(shipId);
+        target[shipId] = cell;
+    }
+
+    /** Move the ship asked for this turn, or null before it has been decided. */
+    public Direction queued(final int shipId) {
+        return shipId < queued.length && queued[shipId] != NO_MOVE ? Direction.ALL[queued[shipId]] : null;
+    }
+
+    public void setQueued(final int shipId, final Direction direction) {
+        ensureCapacity(shipId);
+        queued[shipId] = direction == null ? NO_MOVE : (byte) direction.ordinal();
+    }
+
+    @Override
+    public void spawned(final Ship ship) {
+        clear(ship.id.id);
+    }
+
+    @Override
+    public void destroyed(final Ship ship) {
+        clear(ship.id.id);
+    }
+
+    private void clear(final int shipId) {
+        if (shipId < role.length) {
+            role[shipId] = EXPLORE;
+            target[shipId] = -1;
+            queued[shipId] = NO_MOVE;
+        }
+    }
+
+    private void ensureCapacity(final int shipId) {
+        if (shipId < role.length) {
+            return;
+        }
+
+        final int oldCapacity = role.length;
+        final int capacity = Math.max(oldCapacity * 2, shipId + 1);
+        role = Arrays.copyOf(role, capacity);
+        target = Arrays.copyOf(target, capacity);
+        queued = Arrays.copyOf(queued, capacity);
+        Arrays.fill(target, oldCapacity, capacity, -1);
+        Arrays.fill(queued, oldCapacity, capacity, NO_MOVE);
+    }
+}
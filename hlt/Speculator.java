@@ -0,0 +1,201 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Uses the time spent waiting for the next frame. Once a turn's commands are sent, the bot thread snapshots
+ * what it knows and predicts the next map from its own commands: every ship of ours that stays still mines its
+ * cell. A background worker computes every player's distance field, the value field and its candidates on that
+ * prediction. When the real frame arrives, only the cells the prediction touched, the cells named in the
+ * frame's update list and the cells whose inspiration flipped are compared and patched.
+ *
+ * Distance costs only fall where a cell's halite dropped below the prediction, and those are repaired from the
+ * changed cells outward. A cell left richer than predicted, such as one a ship died on, or any new structure
+ * makes the routes of whole regions wrong, so those frames fall back to computing the fields in full.
+ */
+public class Speculator {
+    private final GameMap map;
+    private final List<Player> players;
+    private final int mine;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        final Thread thread = new Thread(task, "speculator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // snapshot of the turn just sent, owned by the worker until its result has been collected
+    private final int[] halite;
+    private final long[] inspired;
+    private final long[] structure;
+    private final int[] structureOwner;
+    /** Predicted distance fields, in the order of the players list. */
+    private final DistanceField[] distances;
+    private final ValueField field;
+
+    /** Cells the prediction mined, the first minedCount entries. */
+    private final int[] mined;
+    private int minedCount;
+
+    /** Cells to evaluate again, and the ones among them whose move cost fell, for the frame being applied. */
+    private final int[] patched;
+    private final int[] patchedStamp;
+    private int patchedGeneration;
+    private int patchedCount;
+    private final int[] lowered;
+    private int loweredCount;
+
+    /** Ships of ours that were told to move, by ship id, valid where the stamp matches generation. */
+    private int[] movedStamp = new int[256];
+    private int generation;
+
+    private Future<?> pending;
+
+    public Speculator(final GameMap map, final List<Player> players, final Player me) {
+        this.map = map;
+        this.players = players;
+        mine = players.indexOf(me);
+        halite = new int[map.size];
+        inspired = new long[(map.size + 63) >>> 6];
+        structure = new long[(map.size + 63) >>> 6];
+        structureOwner = new int[map.size];
+        distances = new DistanceField[players.size()];
+        for (int p = 0; p < distances.length; ++p) {
+            distances[p] = new DistanceField(players.get(p).distances);
+        }
+        // twice the candidates, so the ones the real frame makes poorer can be replaced without a scan
+        field = new ValueField(map, 2 * ValueField.defaultCandidates(map));
+
+        mined = new int[map.size];
+        patched = new int[map.size];
+        patchedStamp = new int[map.size];
+        lowered = new int[map.size];
+    }
+
+    /** Snapshots the state after our commands and starts computing the fields of the predicted map. */
+    void start(final Player me, final Collection<Command> commands, final InspirationMap inspiration) {
+        ++generation;
+        for (final Command command : commands) {
+            if (command.type == 'm' && command.direction != Direction.STILL) {
+                if (command.id >= movedStamp.length) {
+                    movedStamp = Arrays.copyOf(movedStamp, Math.max(movedStamp.length * 2, command.id + 1));
+                }
+                movedStamp[command.id] = generation;
+            }
+        }
+
+        System.arraycopy(map.halite, 0, halite, 0, map.size);
+        System.arraycopy(map.structure, 0, structure, 0, structure.length);
+        System.arraycopy(map.structureOwner, 0, structureOwner, 0, map.size);
+        inspiration.copyInspired(inspired);
+
+        minedCount = 0;
+        for (final Ship ship : me.ships.values()) {
+            final int id = ship.id.id;
+            final int cell = map.index(ship.position);
+            if (id < movedStamp.length && movedStamp[id] == generation || GameMap.test(structure, cell)) {
+                continue;
+            }
+            final int extracted = (halite[cell] + Constants.EXTRACT_RATIO - 1) / Constants.EXTRACT_RATIO;
+            final int taken = Math.min(extracted, Constants.MAX_HALITE - ship.halite);
+            if (taken > 0) {
+                halite[cell] -= taken;
+                mined[minedCount++] = cell;
+            }
+        }
+
+        pending = worker.submit(() -> {
+            for (final DistanceField distance : distances) {
+                distance.compute(halite, structure, structureOwner);
+            }
+            field.compute(halite, distances[mine], inspired, structure);
+        });
+    }
+
+    /**
+     * Brings the speculated fields up to date with the frame just read and hands them to the players' distance
+     * fields and the given value field. Returns false, leaving every field untouched, when there is nothing to
+     * adopt or the frame moved too far from the prediction.
+     */
+    boolean apply(final ValueField values, final InspirationMap inspiration) {
+        if (pending == null) {
+            return false;
+        }
+
+        try {
+            pending.get();
+        } catch (final InterruptedException | ExecutionException e) {
+            Log.warn("Speculation failed, computing the fields in full: {}").arg(e);
+            return false;
+        } finally {
+            pending = null;
+        }
+
+        if (!Arrays.equals(map.structure, structure)) {
+            Log.debug("[SPEC] Structures changed, computing the fields in full");
+            return false;
+        }
+
+        if (++patchedGeneration == 0) {
+            Arrays.fill(patchedStamp, 0);
+            patchedGeneration = 1;
+        }
+        patchedCount = 0;
+        loweredCount = 0;
+        boolean raised = false;
+        for (int i = 0; i < minedCount; ++i) {
+            raised |= compare(mined[i]);
+        }
+        for (int i = 0; i < map.changedCount(); ++i) {
+            raised |= compare(map.changed(i));
+        }
+
+        for (int p = 0; p < distances.length; ++p) {
+            final DistanceField live = players.get(p).distances;
+            if (raised) {
+                live.compute();
+            } else {
+                live.adopt(distances[p]);
+                live.lowered(lowered, loweredCount);
+            }
+        }
+
+        for (int i = 0; i < inspiration.changedCount(); ++i) {
+            patch(inspiration.changed(i));
+        }
+
+        final DistanceField home = players.get(mine).distances;
+        values.adopt(field, patched, patchedCount, home, inspiration);
+
+        Log.debug("[SPEC] Patched {} of {} cells, {} cheaper to leave, distances recomputed: {}")
+                .arg(patchedCount).arg(map.size).arg(loweredCount).arg(raised);
+        return true;
+    }
+
+    // patches the cell if its real halite differs from the prediction; returns whether leaving it got dearer
+    private boolean compare(final int cell) {
+        if (patchedStamp[cell] == patchedGeneration || map.halite[cell] == halite[cell]) {
+            return false;
+        }
+        patch(cell);
+
+        final int real = map.halite[cell] / Constants.MOVE_COST_RATIO;
+        final int predicted = halite[cell] / Constants.MOVE_COST_RATIO;
+        if (real < predicted) {
+            lowered[loweredCount++] = cell;
+        }
+        return real > predicted;
+    }
+
+    private void patch(final int cell) {
+        if (patchedStamp[cell] != patchedGeneration) {
+            patchedStamp[cell] = patchedGeneration;
+            patched[patchedCount++] = cell;
+        }
+    }
+}
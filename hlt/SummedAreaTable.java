@@ -0,0 +1,106 @@
+package hlt;
+
+/**
+ * Summed-area table over the halite of a GameMap, answering the total halite of any wrapping rectangle in
+ * O(1). A halite change marks the table stale and refresh() rebuilds it in one O(width * height) pass.
+ * A single changed cell already invalidates every sum below and right of it, and ships mine all over the map
+ * each turn, so tracking which part changed would almost never save a rebuild.
+ */
+public class SummedAreaTable {
+    private final GameMap map;
+    private final int stride;
+    /** sums[y * stride + x] is the halite in the rectangle [0, x) x [0, y). */
+    private final long[] sums;
+
+    private boolean stale = true;
+    /** Scratch for richestRegions: the sum of the square at each top-left cell, -1 once ruled out. */
+    private long[] regionSums;
+
+    public SummedAreaTable(final GameMap map) {
+        this.map = map;
+        stride = map.width + 1;
+        sums = new long[stride * (map.height + 1)];
+    }
+
+    /** Records that some cell's halite changed; the table is stale until refresh(). */
+    public void markStale() {
+        stale = true;
+    }
+
+    public void refresh() {
+        if (!stale) {
+            return;
+        }
+
+        for (int y = 1; y <= map.height; ++y) {
+            final int row = y * stride;
+            final int source = (y - 1) * map.width;
+            long rowSum = 0;
+            for (int x = 1; x <= map.width; ++x) {
+                rowSum += map.halite[source + x - 1];
+                sums[row + x] = sums[row - stride + x] + rowSum;
+            }
+        }
+        stale = false;
+    }
+
+    /** Halite in the width x height rectangle whose top-left cell is (x, y), wrapping around the edges. */
+    public long sum(final int x, final int y, final int width, final int height) {
+        final int w = Math.min(width, map.width);
+        final int h = Math.min(height, map.height);
+        final int left = Math.floorMod(x, map.width);
+        final int top = Math.floorMod(y, map.height);
+
+        final int right = Math.min(left + w, map.width);
+        final int bottom = Math.min(top + h, map.height);
+        final int wrappedWidth = left + w - right;
+        final int wrappedHeight = top + h - bottom;
+
+        long total = block(left, top, right, bottom);
+        if (wrappedWidth > 0) total += block(0, top, wrappedWidth, bottom);
+        if (wrappedHeight > 0) total += block(left, 0, right, wrappedHeight);
+        if (wrappedWidth > 0 && wrappedHeight > 0) total += block(0, 0, wrappedWidth, wrappedHeight);
+        return total;
+    }
+
+    /**
+     * Top-left cells of the richest size x size squares that do not overlap each other, richest first, written
+     * into out. Returns how many were written.
+     */
+    public int richestRegions(final int size, final int[] out) {
+        if (regionSums == null) {
+            regionSums = new long[map.size];
+        }
+        for (int y = 0; y < map.height; ++y) {
+            for (int x = 0; x < map.width; ++x) {
+                regionSums[y * map.width + x] = sum(x, y, size, size);
+            }
+        }
+
+        int n = 0;
+        while (n < out.length) {
+            int best = -1;
+            for (int cell = 0; cell < map.size; ++cell) {
+                if (regionSums[cell] >= 0 && (best < 0 || regionSums[cell] > regionSums[best])) {
+                    best = cell;
+                }
+            }
+            if (best < 0) break;
+            out[n++] = best;
+
+            // corners closer than size to the chosen one would overlap it
+            final Position corner = map.position(best);
+            for (int dy = 1 - size; dy < size; ++dy) {
+                for (int dx = 1 - size; dx < size; ++dx) {
+                    regionSums[map.index(corner.x + dx, corner.y + dy)] = -1;
+                }
+            }
+        }
+        return n;
+    }
+
+    // halite in [x0, x1) x [y0, y1) without wrapping
+    private long block(final int x0, final int y0, final int x1, final int y1) {
+        return sums[y1 * stride + x1] - sums[y0 * stride + x1] - sums[y1 * stride + x0] + sums[y0 * stride + x0];
+    }
+}
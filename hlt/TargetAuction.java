@@ -0,0 +1,334 @@
+package hlt;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Assigns mining targets to exploring ships with a forward auction, so targets are shared out by value rather
+ * than by which ship asks first. Each ship bids on its OPTIONS best candidate cells from the ValueField,
+ * valued as halite per turn with the travel priced along the ship's cheapest route, and may always settle for no
+ * target at value 0. Prices of the cells won on the
+ * previous turn carry over, decayed by PRICE_DECAY, so the auction starts near the last equilibrium and
+ * usually settles in a few bids per ship.
+ */
+public class TargetAuction {
+    public static final int OPTIONS = 8;
+    public static final double EPSILON = 0.01;
+    public static final double PRICE_DECAY = 0.9;
+    /** Bids allowed per ship before the ships still bidding just claim their best free option. */
+    private static final int MAX_BIDS_PER_SHIP = 64;
+    /** Bidders per ForkJoin task; fewer bidders than this are evaluated on the calling thread. */
+    private static final int PARALLEL_CHUNK = 16;
+
+    private final GameMap map;
+    private final ValueField values;
+    /** Route costing scratch, one per thread evaluating bidders. */
+    private final ThreadLocal<PathFinder> finders;
+
+    private final double[] price;
+    private final int[] owner;
+    private final int[] ownerStamp;
+    private int generation;
+    /** Generation of the last auction that ran; its winners' cells are the only prices worth keeping. */
+    private int lastRun;
+
+    private int bidderCount;
+    private Ship[] ships = new Ship[64];
+    private int[] assigned = new int[64];
+    private int[] options = new int[64 * OPTIONS];
+    private double[] benefits = new double[64 * OPTIONS];
+    private int[] optionCount = new int[64];
+    private int[] queue = new int[64];
+    private int[] cursor = new int[64];
+    private int[] pending = new int[64];
+
+    public TargetAuction(final GameMap map, final ValueField values) {
+        this.map = map;
+        this.values = values;
+        finders = ThreadLocal.withInitial(() -> new PathFinder(map));
+        price = new double[map.size];
+        owner = new int[map.size];
+        ownerStamp = new int[map.size];
+    }
+
+    public void reset() {
+        bidderCount = 0;
+        if (++generation == 0) {
+            Arrays.fill(ownerStamp, 0);
+            generation = 1;
+        }
+        for (int cell = 0; cell < map.size; ++cell) {
+            price[cell] *= PRICE_DECAY;
+        }
+    }
+
+    /** Adds a ship that needs a target, with its best unbooked candidates, and returns its slot. */
+    public int addBidder(final Ship ship) {
+        final int slot = addSlot(ship);
+        evaluate(slot);
+        return slot;
+    }
+
+    /**
+     * Adds many bidders at once. Their routes are priced and their candidates scored in parallel on the common
+     * ForkJoinPool. Nothing writes the map or the value field until the call returns, and each worker searches
+     * with its own PathFinder and writes only its own slots, so the result is the same as adding them one by one,
+     * in the same slot order, whatever the scheduling.
+     */
+    public void addBidders(final Collection<Ship> bidders) {
+        final int first = bidderCount;
+        for (final Ship ship : bidders) {
+            addSlot(ship);
+        }
+
+        if (bidderCount - first < 2 * PARALLEL_CHUNK || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            for (int slot = first; slot < bidderCount; ++slot) {
+                evaluate(slot);
+            }
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new Evaluate(first, bidderCount));
+    }
+
+    private final class Evaluate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Evaluate(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                for (int slot = from; slot < to; ++slot) {
+                    evaluate(slot);
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new Evaluate(from, middle), new Evaluate(middle, to));
+        }
+    }
+
+    private int addSlot(final Ship ship) {
+        if (bidderCount == ships.length) {
+            final int capacity = bidderCount * 2;
+            ships = Arrays.copyOf(ships, capacity);
+            assigned = Arrays.copyOf(assigned, capacity);
+            options = Arrays.copyOf(options, capacity * OPTIONS);
+            benefits = Arrays.copyOf(benefits, capacity * OPTIONS);
+            optionCount = Arrays.copyOf(optionCount, capacity);
+            queue = Arrays.copyOf(queue, capacity);
+            cursor = Arrays.copyOf(cursor, capacity);
+            pending = Arrays.copyOf(pending, capacity);
+        }
+
+        final int slot = bidderCount++;
+        ships[slot] = ship;
+        assigned[slot] = -1;
+        return slot;
+    }
+
+    // keeps the ship's best OPTIONS unbooked candidates, sorted by benefit, in its own slice of the arrays; the
+    // distance to a candidate is its route cost in turns, the halite burned on the way included
+    private void evaluate(final int slot) {
+        final Ship ship = ships[slot];
+        final int capacity = Constants.MAX_HALITE - ship.halite;
+        final int base = slot * OPTIONS;
+        final PathFinder finder = finders.get();
+        finder.expand(map.index(ship.position), ship.id.id, ship.owner, DistanceField.DEFAULT_TURN_COST);
+        int count = 0;
+        for (int i = 0; i < values.candidateCount(); ++i) {
+            final int cell = values.candidate(i);
+            final int cost = finder.cost(cell);
+            if (cost < 0 || map.isBooked(cell)) continue;
+
+            final double benefit = values.score(cell, cost / DistanceField.DEFAULT_TURN_COST, capacity);
+            if (count == OPTIONS && benefit <= benefits[base + OPTIONS - 1]) continue;
+
+            int j = count < OPTIONS ? count++ : OPTIONS - 1;
+            for (; j > 0 && benefits[base + j - 1] < benefit; --j) {
+                options[base + j] = options[base + j - 1];
+                benefits[base + j] = benefits[base + j - 1];
+            }
+            options[base + j] = cell;
+            benefits[base + j] = benefit;
+        }
+        optionCount[slot] = count;
+    }
+
+    public void run() {
+        // a price only helps as a warm start while someone still holds the cell; an unheld price would just
+        // talk the ships out of a free target
+        for (int cell = 0; cell < map.size; ++cell) {
+            if (price[cell] != 0 && ownerStamp[cell] != lastRun) {
+                price[cell] = 0;
+            }
+        }
+        lastRun = generation;
+
+        int head = 0;
+        int tail = 0;
+        for (int slot = 0; slot < bidderCount; ++slot) {
+            queue[tail++ % queue.length] = slot;
+        }
+
+        int bids = MAX_BIDS_PER_SHIP * bidderCount;
+        while (head != tail && bids-- > 0) {
+            final int bidder = queue[head++ % queue.length];
+            final int base = bidder * OPTIONS;
+
+            int best = -1;
+            double bestValue = 0;
+            double secondValue = 0;
+            for (int i = 0; i < optionCount[bidder]; ++i) {
+                final double value = benefits[base + i] - price[options[base + i]];
+                if (value > bestValue) {
+                    secondValue = bestValue;
+                    bestValue = value;
+                    best = options[base + i];
+                } else if (value > secondValue) {
+                    secondValue = value;
+                }
+            }
+
+            // no target is worth its price, settle for none
+            if (best < 0) {
+                continue;
+            }
+
+            price[best] += bestValue - secondValue + EPSILON;
+            if (ownerStamp[best] == generation && owner[best] >= 0) {
+                final int outbid = owner[best];
+                assigned[outbid] = -1;
+                queue[tail++ % queue.length] = outbid;
+            }
+            ownerStamp[best] = generation;
+            owner[best] = bidder;
+            assigned[bidder] = best;
+        }
+
+        claimTargets(head, tail);
+    }
+
+    /**
+     * Books the targets in the map's ClaimTable, at a priority set by how much each ship gains from the cell,
+     * so the better placement keeps a contested cell. Winners claim their won cell first, ships still bidding
+     * when the bids ran out claim their best option, and a ship preempted by a stronger claim moves on to its
+     * next option in the following round. Ships that settled for no target claim nothing. The rounds run in parallel for large fleets; since every cell keeps its strongest claim, the
+     * targets do not depend on the order the claims land in.
+     */
+    private void claimTargets(final int head, final int tail) {
+        int pendingCount = 0;
+        for (int slot = 0; slot < bidderCount; ++slot) {
+            cursor[slot] = 0;
+            if (assigned[slot] >= 0) {
+                moveToFront(slot, assigned[slot]);
+                pending[pendingCount++] = slot;
+            }
+        }
+        for (int i = head; i != tail; ++i) {
+            pending[pendingCount++] = queue[i % queue.length];
+        }
+
+        while (pendingCount > 0) {
+            if (pendingCount < 2 * PARALLEL_CHUNK || ForkJoinPool.getCommonPoolParallelism() < 2) {
+                for (int i = 0; i < pendingCount; ++i) {
+                    claimNext(pending[i]);
+                }
+            } else {
+                ForkJoinPool.commonPool().invoke(new Claim(0, pendingCount));
+            }
+
+            // ships whose claim was taken by a stronger one, in this round or a later one, go again
+            pendingCount = 0;
+            for (int slot = 0; slot < bidderCount; ++slot) {
+                if (assigned[slot] >= 0 && !map.claims.holds(assigned[slot], ships[slot].id.id)) {
+                    assigned[slot] = -1;
+                    ++cursor[slot];
+                    pending[pendingCount++] = slot;
+                }
+            }
+        }
+    }
+
+    // puts the won cell first among the ship's options, keeping the rest in order of benefit
+    private void moveToFront(final int slot, final int cell) {
+        final int base = slot * OPTIONS;
+        int i = 0;
+        while (options[base + i] != cell) {
+            ++i;
+        }
+        final double benefit = benefits[base + i];
+        for (; i > 0; --i) {
+            options[base + i] = options[base + i - 1];
+            benefits[base + i] = benefits[base + i - 1];
+        }
+        options[base] = cell;
+        benefits[base] = benefit;
+    }
+
+    // claims the ship's best option from its cursor on, or leaves it without a target
+    private void claimNext(final int slot) {
+        final int base = slot * OPTIONS;
+        for (; cursor[slot] < optionCount[slot]; ++cursor[slot]) {
+            final int cell = options[base + cursor[slot]];
+            if (map.claims.claim(cell, ships[slot].id.id, priority(benefits[base + cursor[slot]]))) {
+                assigned[slot] = cell;
+                return;
+            }
+        }
+        assigned[slot] = -1;
+    }
+
+    // benefits run from 0 to MAX_HALITE per turn; scaled onto the claim priorities below FIXED
+    private static int priority(final double benefit) {
+        final double scaled = benefit * (ClaimTable.FIXED - 1) / Constants.MAX_HALITE;
+        return (int) Math.max(0, Math.min(ClaimTable.FIXED - 1, scaled));
+    }
+
+    private final class Claim extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Claim(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK) {
+                for (int i = from; i < to; ++i) {
+                    claimNext(pending[i]);
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new Claim(from, middle), new Claim(middle, to));
+        }
+    }
+
+    public int bidderCount() {
+        return bidderCount;
+    }
+
+    public Ship ship(final int slot) {
+        return ships[slot];
+    }
+
+    /** Cell the ship won and holds in the ClaimTable, or -1 if it ended without a target. */
+    public int target(final int slot) {
+        return assigned[slot];
+    }
+}
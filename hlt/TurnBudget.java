@@ -0,0 +1,48 @@
+package hlt;
+
+/**
+ * Wall clock budget of a turn. It starts when the first line of the frame arrives, and the planner checks it
+ * between stages: once less than the safety margin is left, the remaining work falls back to cheap moves so the
+ * commands always go out before the engine's deadline.
+ */
+public class TurnBudget {
+    /** Time the engine allows per turn. */
+    public static final long TURN_MILLIS = 2000;
+    /** Time kept back for the rest of the turn and for pauses outside our control, such as garbage collection. */
+    public static final long SAFETY_MARGIN_MILLIS = 600;
+    /** Time the engine allows between sending the map and the bot's ready(). */
+    public static final long INIT_MILLIS = 30_000;
+    /** Time the warm-up before ready() may take: two turns' worth, well inside INIT_MILLIS. */
+    public static final long WARM_UP_MILLIS = 2 * TURN_MILLIS;
+
+    private final long limitNanos;
+    private long marginNanos;
+    private long startNanos;
+
+    public TurnBudget(final long limitMillis, final long marginMillis) {
+        limitNanos = limitMillis * 1_000_000L;
+        marginNanos = marginMillis * 1_000_000L;
+    }
+
+    public void setMargin(final long marginMillis) {
+        marginNanos = marginMillis * 1_000_000L;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    /** Nanoseconds left before the safety margin is reached; negative once it has been. */
+    public long remainingNanos() {
+        return startNanos + limitNanos - marginNanos - System.nanoTime();
+    }
+
+    /** Whether the planner should stop improving the plan and emit what it has. */
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+}
@@ -0,0 +1,237 @@
+package hlt;
+
+import java.util.Arrays;
+
+/**
+ * Per-turn estimate of how much halite per turn a ship earns by mining each cell, shared by every exploring
+ * ship. For each cell the number of mining turns k is chosen to maximise mined(k) / (k + steps home), where
+ * mined(k) follows the EXTRACT_RATIO depletion curve, or the inspired curve and bonus on cells the
+ * InspirationMap marks as inspired. The richest cells are kept as candidates, so a ship
+ * picks its target by scoring those against its own travel distance instead of searching the map.
+ */
+public class ValueField {
+    /** Longest stay on one cell the estimate considers. */
+    public static final int MAX_MINING_TURNS = 8;
+
+    private final GameMap map;
+    private final double[] extracted = new double[MAX_MINING_TURNS + 1];
+    private final double[] extractedInspired = new double[MAX_MINING_TURNS + 1];
+
+    /** Halite collected by the best stay on each cell. */
+    private final double[] gain;
+    /** Mining turns plus turns back to the nearest structure for that stay. */
+    private final int[] turns;
+    /** gain / turns, the expected halite per turn once the ship has arrived. */
+    private final double[] rate;
+
+    private final int[] candidates;
+    private int candidateCount;
+    /** Best rate of the cells the candidates left out when they were collected. */
+    private double leftOut;
+    /** Cells offered to the candidates in the current collection, valid where the stamp matches generation. */
+    private final int[] offered;
+    private int generation;
+
+    public ValueField(final GameMap map) {
+        this(map, defaultCandidates(map));
+    }
+
+    /** A field keeping the given number of candidates, such as a spare supply for adopt() to draw on. */
+    ValueField(final GameMap map, final int candidateCapacity) {
+        this.map = map;
+        gain = new double[map.size];
+        turns = new int[map.size];
+        rate = new double[map.size];
+        candidates = new int[candidateCapacity];
+        offered = new int[map.size];
+        fillCurve(extracted, Constants.EXTRACT_RATIO, 1.0);
+        fillCurve(extractedInspired, Constants.INSPIRED_EXTRACT_RATIO, 1.0 + Constants.INSPIRED_BONUS_MULTIPLIER);
+    }
+
+    static int defaultCandidates(final GameMap map) {
+        return Math.max(64, map.size / 16);
+    }
+
+    /** Rebuilds the field for the player whose structures the distance field measures. */
+    public void compute(final DistanceField home, final InspirationMap inspiration) {
+        for (int cell = 0; cell < map.size; ++cell) {
+            evaluate(cell, home, inspiration);
+        }
+        collectCandidates();
+    }
+
+    /**
+     * Rebuilds the field and its candidates on a snapshot instead of the live map, so it can run off the bot
+     * thread.
+     */
+    void compute(final int[] halite, final DistanceField home, final long[] inspired, final long[] structure) {
+        for (int cell = 0; cell < map.size; ++cell) {
+            evaluate(cell, halite[cell], home.steps(cell), GameMap.test(structure, cell),
+                    GameMap.test(inspired, cell) ? extractedInspired : extracted);
+        }
+        collectCandidates();
+    }
+
+    /**
+     * Takes over a field computed elsewhere, such as the Speculator's, and evaluates the given cells again on
+     * the live map. The candidates are collected from the other field's candidates and those cells alone; every
+     * other cell kept its rate, which is no better than the best the other field left out, so the map is only
+     * scanned again when the new candidates cannot beat that rate.
+     */
+    void adopt(final ValueField other, final int[] cells, final int count, final DistanceField home,
+               final InspirationMap inspiration) {
+        System.arraycopy(other.gain, 0, gain, 0, map.size);
+        System.arraycopy(other.turns, 0, turns, 0, map.size);
+        System.arraycopy(other.rate, 0, rate, 0, map.size);
+        for (int i = 0; i < count; ++i) {
+            evaluate(cells[i], home, inspiration);
+        }
+
+        if (++generation == 0) {
+            Arrays.fill(offered, 0);
+            generation = 1;
+        }
+        candidateCount = 0;
+        leftOut = other.leftOut;
+        for (int i = 0; i < other.candidateCount; ++i) {
+            offer(other.candidates[i]);
+        }
+        for (int i = 0; i < count; ++i) {
+            offer(cells[i]);
+        }
+
+        if (other.leftOut > 0 && (candidateCount < candidates.length || rate[candidates[0]] < other.leftOut)) {
+            Log.debug("[SPEC] Spare candidates ran out, collecting from every cell");
+            collectCandidates();
+        }
+    }
+
+    /** Evaluates one cell on the live map. */
+    private void evaluate(final int cell, final DistanceField home, final InspirationMap inspiration) {
+        evaluate(cell, map.halite[cell], home.steps(cell), map.hasStructure(cell),
+                inspiration.isInspired(cell) ? extractedInspired : extracted);
+    }
+
+    /** Rebuilds the candidate list from the rates of every cell. */
+    private void collectCandidates() {
+        if (++generation == 0) {
+            Arrays.fill(offered, 0);
+            generation = 1;
+        }
+        candidateCount = 0;
+        leftOut = 0;
+        for (int cell = 0; cell < map.size; ++cell) {
+            offer(cell);
+        }
+    }
+
+    // fraction of a cell's halite collected after each number of mining turns
+    private static void fillCurve(final double[] curve, final int ratio, final double multiplier) {
+        final double keep = 1.0 - 1.0 / ratio;
+        double remaining = 1.0;
+        for (int k = 1; k <= MAX_MINING_TURNS; ++k) {
+            remaining *= keep;
+            curve[k] = (1.0 - remaining) * multiplier;
+        }
+    }
+
+    private void evaluate(final int cell, final int halite, final int stepsHome, final boolean structure,
+                          final double[] curve) {
+        gain[cell] = 0;
+        turns[cell] = 1;
+        rate[cell] = 0;
+        if (structure || stepsHome == DistanceField.UNREACHABLE) {
+            return;
+        }
+
+        for (int k = 1; k <= MAX_MINING_TURNS; ++k) {
+            final double mined = Math.min(halite * curve[k], Constants.MAX_HALITE);
+            final double perTurn = mined / (k + stepsHome);
+            if (perTurn > rate[cell]) {
+                gain[cell] = mined;
+                turns[cell] = k + stepsHome;
+                rate[cell] = perTurn;
+            }
+        }
+    }
+
+    public double rate(final int cell) {
+        return rate[cell];
+    }
+
+    /** Expected halite per turn for a ship that travels the given distance, mines the cell and returns. */
+    public double score(final int cell, final int distance, final int capacity) {
+        return Math.min(gain[cell], capacity) / (distance + turns[cell]);
+    }
+
+    public int candidateCount() {
+        return candidateCount;
+    }
+
+    /** One of the richest cells of this turn, in no particular order. */
+    public int candidate(final int i) {
+        return candidates[i];
+    }
+
+    /**
+     * Best unbooked candidate cell for the ship, counting its travel distance and free cargo space,
+     * or -1 when every candidate is taken.
+     */
+    public int bestTarget(final Ship ship) {
+        final int origin = map.index(ship.position);
+        final int capacity = Constants.MAX_HALITE - ship.halite;
+
+        int best = -1;
+        double bestScore = 0;
+        for (int i = 0; i < candidateCount; ++i) {
+            final int cell = candidates[i];
+            if (map.isBooked(cell)) continue;
+
+            final double s = score(cell, map.manhattanDistance(origin, cell), capacity);
+            if (s > bestScore) {
+                bestScore = s;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    // candidates is a min-heap on rate holding the richest cells seen so far, each cell offered once per collection
+    private void offer(final int cell) {
+        if (offered[cell] == generation || rate[cell] <= 0) {
+            return;
+        }
+        offered[cell] = generation;
+
+        if (candidateCount < candidates.length) {
+            int i = candidateCount++;
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (rate[candidates[parent]] <= rate[cell]) break;
+                candidates[i] = candidates[parent];
+                i = parent;
+            }
+            candidates[i] = cell;
+            return;
+        }
+
+        if (rate[cell] <= rate[candidates[0]]) {
+            leftOut = Math.max(leftOut, rate[cell]);
+            return;
+        }
+
+        leftOut = Math.max(leftOut, rate[candidates[0]]);
+        int i = 0;
+        final int half = candidateCount >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < candidateCount && rate[candidates[child + 1]] < rate[candidates[child]]) {
+                ++child;
+            }
+            if (rate[cell] <= rate[candidates[child]]) break;
+            candidates[i] = candidates[child];
+            i = child;
+        }
+        candidates[i] = cell;
+    }
+}